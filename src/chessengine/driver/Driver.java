@@ -1,21 +1,64 @@
 package chessengine.driver;
 
+import java.util.Arrays;
 import java.util.Scanner;
+import chessengine.system.Engine;
 import chessengine.system.EngineVsEngine;
+import chessengine.system.Perft;
+import chessengine.system.Position;
+import chessengine.system.SearchResult;
 import chessengine.system.UserVsEngine;
 
 /**
  * Driver class for a chess engine designed to be able to play 
  * an entire game of chess against a human
+ * <p>
+ * Running with the arguments
+ * <code>perft &lt;depth&gt; [divide] [hash &lt;mb&gt;] [threads &lt;n&gt;] [split2] [fen &lt;fen&gt;]</code>
+ * counts the move tree of the starting position (or the FEN position) instead of playing a game.
+ * <code>threads 0</code> uses one thread per processor, and <code>split2</code> counts each reply
+ * to a root move as its own task.
+ * <p>
+ * Running with the arguments <code>bench [&lt;depth&gt;] [threads &lt;n&gt;] [forkjoin]</code>
+ * searches a fixed set of middlegame positions to the depth (8 if not given) with a new engine
+ * for each, and prints each top move and score with the nodes searched and the time taken, so
+ * search changes can be compared by node count. <code>forkjoin</code> searches in fork-join mode
+ * rather than with Lazy SMP.
+ * <p>
+ * Otherwise the engine plays a game against itself. Running with the arguments
+ * <code>threads &lt;n&gt;</code> has the engine search with that many threads (0 for one per
+ * processor).
  * 
  * @author Darcy McCoy
  * @since 1.0
  */
 public class Driver {
+	
+	/** The number of plies bench searches when no depth is given. */
+	private static final int DEFAULT_BENCH_DEPTH = 8;
+	
+	/** Middlegame positions searched by bench, with open lines, pins and tactics to find. */
+	private static final String[] BENCH_FENS = {
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP1B1PPP/R2QKB1R w KQ - 0 1",
+			"2r3k1/pp3ppp/2n1b3/3p4/3P4/2NB1N2/PP3PPP/4R1K1 w - - 0 1",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 1"};
+	
 	public static void main(String[] args) {
+		if ((args.length > 0) && args[0].equals("perft")) {
+			runPerft(args);
+			return;
+		}
+		if ((args.length > 0) && args[0].equals("bench")) {
+			runBench(args);
+			return;
+		}
+		
 		Scanner userInput = new Scanner(System.in);
 		
 		EngineVsEngine game1 = new EngineVsEngine();
+		if ((args.length > 1) && args[0].equals("threads"))
+			game1.setEngineThreadCount(Integer.parseInt(args[1]));
 		game1.play();
 		game1.closeScanner();
 		
@@ -23,5 +66,74 @@ public class Driver {
 
 		System.out.println("\nThe program has terminated.");
 	}
+	
+	/**
+	 * Runs a perft from the command line arguments and prints the node count and speed.
+	 * 
+	 * @param args String arguments starting with <code>perft &lt;depth&gt;</code>
+	 */
+	private static void runPerft(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: perft <depth> [divide] [hash <mb>] [threads <n>] [split2] [fen <fen>]");
+			return;
+		}
+		int depth = Integer.parseInt(args[1]);
+		boolean divide = false;
+		int hashSizeMb = 0;
+		int threadCount = 1;
+		boolean splitSecondPly = false;
+		Position position = new Position();
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("divide")) {
+				divide = true;
+			} else if (args[i].equals("hash") && (i + 1 < args.length)) {
+				hashSizeMb = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("threads") && (i + 1 < args.length)) {
+				threadCount = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("split2")) {
+				splitSecondPly = true;
+			} else if (args[i].equals("fen")) {
+				position = Position.fromFen(String.join(" ", Arrays.copyOfRange(args, i + 1, args.length)));
+				break;
+			}
+		}
+		new Perft(position, hashSizeMb, threadCount, splitSecondPly).report(depth, divide);
+	}
+	
+	/**
+	 * Runs a bench from the command line arguments and prints the result, nodes and time of each
+	 * position, then the totals.
+	 * 
+	 * @param args String arguments starting with <code>bench</code>
+	 */
+	private static void runBench(String[] args) {
+		int depth = DEFAULT_BENCH_DEPTH;
+		int threadCount = 1;
+		boolean forkJoinSearch = false;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("threads") && (i + 1 < args.length)) {
+				threadCount = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("forkjoin")) {
+				forkJoinSearch = true;
+			} else {
+				depth = Integer.parseInt(args[i]);
+			}
+		}
+		long totalNodes = 0;
+		long totalMs = 0;
+		for (String fen : BENCH_FENS) {
+			Engine engine = new Engine(Position.fromFen(fen), depth);
+			engine.setThreadCount(threadCount);
+			engine.setForkJoinSearch(forkJoinSearch);
+			long startTime = System.nanoTime();
+			SearchResult result = engine.search();
+			long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+			totalNodes += engine.getNodeCount();
+			totalMs += elapsedMs;
+			System.out.println(fen + ": " + result + ", " + engine.getNodeCount() + " nodes in " + elapsedMs + " ms");
+		}
+		System.out.println("Depth " + depth + ": " + totalNodes + " nodes in " + totalMs + " ms ("
+				+ (totalNodes * 1000 / Math.max(totalMs, 1)) + " nps)");
+	}
 
 }
@@ -0,0 +1,369 @@
+package chessengine.system;
+
+/**
+ * The <code>Attacks</code> class contains lookup tables of the squares that
+ * pieces attack. The tables are built once when the class is loaded, so finding
+ * the squares a piece attacks during move generation is only a few array reads.
+ * <p>
+ * Knight, king and pawn attacks only depend on the square the piece is on, so
+ * they are stored as one bitboard per square.
+ * <p>
+ * Rook and bishop attacks depend on which squares are occupied, so they are
+ * found with magic bitboards. For each square, the occupied squares that can
+ * block the piece are multiplied by a magic number and shifted, which maps
+ * every possible set of blockers to an index in that square's table. The magic
+ * numbers were found ahead of time by testing random sparse numbers until one
+ * mapped every set of blockers without two different attacks colliding.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public final class Attacks {
+
+	/**
+	 * Prevents instantiation of this class.
+	 */
+	private Attacks() {
+	}
+
+	/** Row and file steps of the straight directions that rooks and queens move along. */
+	private static final int[][] STRAIGHT_STEPS = { { -1, 0 }, { 0, 1 }, { 1, 0 }, { 0, -1 } };
+
+	/** Row and file steps of the diagonal directions that bishops and queens move along. */
+	private static final int[][] DIAGONAL_STEPS = { { -1, 1 }, { 1, 1 }, { 1, -1 }, { -1, -1 } };
+
+	/** Row and file steps of a knight's moves. */
+	private static final int[][] KNIGHT_STEPS = { { -2, 1 }, { -1, 2 }, { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 },
+			{ -1, -2 }, { -2, -1 } };
+
+	/** Row and file steps of a king's (non castling) moves. */
+	private static final int[][] KING_STEPS = { { -1, 0 }, { -1, 1 }, { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 },
+			{ 0, -1 }, { -1, -1 } };
+
+	/** Row and file steps of a white pawn's captures. */
+	private static final int[][] WH_PAWN_STEPS = { { -1, 1 }, { -1, -1 } };
+
+	/** Row and file steps of a black pawn's captures. */
+	private static final int[][] BK_PAWN_STEPS = { { 1, 1 }, { 1, -1 } };
+
+	/** The squares a knight on each square attacks. */
+	private static final long[] KNIGHT_ATTACKS = initLeaperAttacks(KNIGHT_STEPS);
+
+	/** The squares a king on each square attacks. */
+	private static final long[] KING_ATTACKS = initLeaperAttacks(KING_STEPS);
+
+	/** The squares a white pawn on each square attacks. */
+	private static final long[] WH_PAWN_ATTACKS = initLeaperAttacks(WH_PAWN_STEPS);
+
+	/** The squares a black pawn on each square attacks. */
+	private static final long[] BK_PAWN_ATTACKS = initLeaperAttacks(BK_PAWN_STEPS);
+
+	/** The squares that can block a rook on each square (the board edges can't block). */
+	private static final long[] ROOK_MASKS = new long[Board.SQR_COUNT];
+
+	/** The squares that can block a bishop on each square (the board edges can't block). */
+	private static final long[] BISHOP_MASKS = new long[Board.SQR_COUNT];
+
+	/** The magic number of each square for rook attacks. */
+	private static final long[] ROOK_MAGICS = {
+			0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+			0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+			0x0400800040008021L, 0x0400400020005000L, 0x8240801000200080L, 0x8611001004200900L,
+			0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+			0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+			0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+			0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+			0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+			0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+			0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+			0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+			0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+			0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+			0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+			0x8044110480002441L, 0x2008110084402202L, 0x90806005090010C1L, 0x000420310A004A42L,
+			0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L };
+
+	/** The magic number of each square for bishop attacks. */
+	private static final long[] BISHOP_MAGICS = {
+			0x0045010808008680L, 0x2002080204004898L, 0x0210009A10400006L, 0x0824050200810200L,
+			0x0006061105004090L, 0x00010108C0000000L, 0x0814040282104004L, 0x0012012201106800L,
+			0x10823014100C1040L, 0x0080C2088802808CL, 0x0281108410404000L, 0x0101212041826200L,
+			0x0020141028221058L, 0x2201020202200202L, 0x000082A801482000L, 0x0000008401411044L,
+			0x0007103014300404L, 0x0002091110010100L, 0x42140012040C0808L, 0x0800808802004020L,
+			0x90C4004210140000L, 0x0800200900A01000L, 0x00D0400201108810L, 0x80820183814412A0L,
+			0x00A01008202202B4L, 0x01C2021A09500402L, 0x0084440208042400L, 0x800400400C090100L,
+			0xBA10040010802100L, 0xD182009006005000L, 0x5011021001009004L, 0x0020420200510400L,
+			0x0292104000468800L, 0x00043009091C0500L, 0x0280441000020025L, 0x0042820080080080L,
+			0x0440101010010040L, 0x1000900100808080L, 0x0108108120089800L, 0x0044010200012682L,
+			0xC002500420900400L, 0x0040482210710800L, 0x0002060024000200L, 0x0281020A44000800L,
+			0xA0021200A4000200L, 0x0001301000840840L, 0x2868500108444220L, 0x0004111041000200L,
+			0x8044020842080200L, 0x0000220104210200L, 0x0000021201044000L, 0x0000280884040028L,
+			0x4012114010858003L, 0x0000081004082B88L, 0x3892700508208002L, 0x00220A041B060400L,
+			0x0812020284014881L, 0x010434A282103100L, 0x0490400824020800L, 0x4A20002C00208800L,
+			0x000000A011020200L, 0x4002940A02482202L, 0x5100100202140406L, 0x02102000840540C1L };
+
+	/** How far each square's magic product is shifted to get a rook table index. */
+	private static final int[] ROOK_SHIFTS = new int[Board.SQR_COUNT];
+
+	/** How far each square's magic product is shifted to get a bishop table index. */
+	private static final int[] BISHOP_SHIFTS = new int[Board.SQR_COUNT];
+
+	/** Where each square's rook attacks start in <code>ROOK_ATTACKS</code>. */
+	private static final int[] ROOK_OFFSETS = new int[Board.SQR_COUNT];
+
+	/** Where each square's bishop attacks start in <code>BISHOP_ATTACKS</code>. */
+	private static final int[] BISHOP_OFFSETS = new int[Board.SQR_COUNT];
+
+	/** Rook attacks for every square and every set of blockers. */
+	private static final long[] ROOK_ATTACKS;
+
+	/** Bishop attacks for every square and every set of blockers. */
+	private static final long[] BISHOP_ATTACKS;
+
+	/** The squares strictly between each pair of squares that share a line; 0 for other pairs. */
+	private static final long[] BETWEEN = new long[Board.SQR_COUNT * Board.SQR_COUNT];
+
+	/** The whole line through each pair of squares that share a line; 0 for other pairs. */
+	private static final long[] LINE = new long[Board.SQR_COUNT * Board.SQR_COUNT];
+
+	static {
+		ROOK_ATTACKS = initSliderAttacks(STRAIGHT_STEPS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+		BISHOP_ATTACKS = initSliderAttacks(DIAGONAL_STEPS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS,
+				BISHOP_OFFSETS);
+		initLines();
+	}
+
+	/**
+	 * Returns the squares a knight on this square attacks.
+	 *
+	 * @param sqr int index of the square the knight is on
+	 * @return long bitboard of the attacked squares
+	 */
+	public static long knightAttacks(int sqr) {
+		return KNIGHT_ATTACKS[sqr];
+	}
+
+	/**
+	 * Returns the squares a king on this square attacks.
+	 *
+	 * @param sqr int index of the square the king is on
+	 * @return long bitboard of the attacked squares
+	 */
+	public static long kingAttacks(int sqr) {
+		return KING_ATTACKS[sqr];
+	}
+
+	/**
+	 * Returns the squares a pawn on this square attacks (the squares it could
+	 * capture on).
+	 *
+	 * @param sqr       int index of the square the pawn is on
+	 * @param whitePawn boolean whether the pawn is white
+	 * @return long bitboard of the attacked squares
+	 */
+	public static long pawnAttacks(int sqr, boolean whitePawn) {
+		if (whitePawn)
+			return WH_PAWN_ATTACKS[sqr];
+		else
+			return BK_PAWN_ATTACKS[sqr];
+	}
+
+	/**
+	 * Returns the squares a rook on this square attacks.
+	 *
+	 * @param sqr       int index of the square the rook is on
+	 * @param occupancy long bitboard of all occupied squares
+	 * @return long bitboard of the attacked squares, including the first blocker
+	 *         in each direction
+	 */
+	public static long rookAttacks(int sqr, long occupancy) {
+		return ROOK_ATTACKS[ROOK_OFFSETS[sqr]
+				+ (int) (((occupancy & ROOK_MASKS[sqr]) * ROOK_MAGICS[sqr]) >>> ROOK_SHIFTS[sqr])];
+	}
+
+	/**
+	 * Returns the squares a bishop on this square attacks.
+	 *
+	 * @param sqr       int index of the square the bishop is on
+	 * @param occupancy long bitboard of all occupied squares
+	 * @return long bitboard of the attacked squares, including the first blocker
+	 *         in each direction
+	 */
+	public static long bishopAttacks(int sqr, long occupancy) {
+		return BISHOP_ATTACKS[BISHOP_OFFSETS[sqr]
+				+ (int) (((occupancy & BISHOP_MASKS[sqr]) * BISHOP_MAGICS[sqr]) >>> BISHOP_SHIFTS[sqr])];
+	}
+
+	/**
+	 * Returns the squares a queen on this square attacks.
+	 *
+	 * @param sqr       int index of the square the queen is on
+	 * @param occupancy long bitboard of all occupied squares
+	 * @return long bitboard of the attacked squares, including the first blocker
+	 *         in each direction
+	 */
+	public static long queenAttacks(int sqr, long occupancy) {
+		return rookAttacks(sqr, occupancy) | bishopAttacks(sqr, occupancy);
+	}
+
+	/**
+	 * Returns the squares strictly between 2 squares on the same rank, file or
+	 * diagonal.
+	 *
+	 * @param sqr1 int index of one square
+	 * @param sqr2 int index of the other square
+	 * @return long bitboard of the squares between them; 0 if the squares don't
+	 *         share a line or are next to each other
+	 */
+	public static long between(int sqr1, int sqr2) {
+		return BETWEEN[(sqr1 * Board.SQR_COUNT) + sqr2];
+	}
+
+	/**
+	 * Returns every square of the rank, file or diagonal that 2 squares share,
+	 * from one edge of the board to the other.
+	 *
+	 * @param sqr1 int index of one square
+	 * @param sqr2 int index of the other square
+	 * @return long bitboard of the line through both squares; 0 if the squares
+	 *         don't share a line
+	 */
+	public static long line(int sqr1, int sqr2) {
+		return LINE[(sqr1 * Board.SQR_COUNT) + sqr2];
+	}
+
+	/**
+	 * Fills the between and line tables using the slider attacks on an empty
+	 * board.
+	 */
+	private static void initLines() {
+		for (int sqr1 = 0; sqr1 < Board.SQR_COUNT; sqr1++) {
+			for (int sqr2 = 0; sqr2 < Board.SQR_COUNT; sqr2++) {
+				long sqr1Bit = 1L << sqr1;
+				long sqr2Bit = 1L << sqr2;
+				int index = (sqr1 * Board.SQR_COUNT) + sqr2;
+				if ((sqr1 != sqr2) && ((rookAttacks(sqr1, 0) & sqr2Bit) != 0)) {
+					BETWEEN[index] = rookAttacks(sqr1, sqr2Bit) & rookAttacks(sqr2, sqr1Bit);
+					LINE[index] = (rookAttacks(sqr1, 0) & rookAttacks(sqr2, 0)) | sqr1Bit | sqr2Bit;
+				} else if ((sqr1 != sqr2) && ((bishopAttacks(sqr1, 0) & sqr2Bit) != 0)) {
+					BETWEEN[index] = bishopAttacks(sqr1, sqr2Bit) & bishopAttacks(sqr2, sqr1Bit);
+					LINE[index] = (bishopAttacks(sqr1, 0) & bishopAttacks(sqr2, 0)) | sqr1Bit | sqr2Bit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the attack table for a piece that jumps straight to its target
+	 * squares.
+	 *
+	 * @param steps row and file steps of the piece's moves
+	 * @return the attacked squares for each square the piece can be on
+	 */
+	private static long[] initLeaperAttacks(int[][] steps) {
+		long[] attacks = new long[Board.SQR_COUNT];
+		for (int sqr = 0; sqr < Board.SQR_COUNT; sqr++) {
+			for (int[] step : steps) {
+				int row = (sqr / Board.WIDTH) + step[0];
+				int file = (sqr % Board.WIDTH) + step[1];
+				if (isOnTheBoard(row, file))
+					attacks[sqr] |= 1L << ((row * Board.WIDTH) + file);
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Builds the masks and attack table for one type of sliding piece.
+	 *
+	 * @param steps   row and file steps of the directions the piece slides along
+	 * @param masks   array filled with the blocker mask of each square
+	 * @param magics  the magic number of each square
+	 * @param shifts  array filled with the index shift of each square
+	 * @param offsets array filled with where each square's attacks start in the
+	 *                table
+	 * @return the attack table for every square and set of blockers
+	 */
+	private static long[] initSliderAttacks(int[][] steps, long[] masks, long[] magics, int[] shifts,
+			int[] offsets) {
+		int tableSize = 0;
+		for (int sqr = 0; sqr < Board.SQR_COUNT; sqr++) {
+			masks[sqr] = findBlockerMask(sqr, steps);
+			shifts[sqr] = Long.SIZE - Long.bitCount(masks[sqr]);
+			offsets[sqr] = tableSize;
+			tableSize += 1 << Long.bitCount(masks[sqr]);
+		}
+
+		long[] table = new long[tableSize];
+		for (int sqr = 0; sqr < Board.SQR_COUNT; sqr++) {
+			long blockers = 0;
+			do {
+				table[offsets[sqr] + (int) ((blockers * magics[sqr]) >>> shifts[sqr])] = findSliderAttacksSlowly(sqr,
+						blockers, steps);
+				blockers = (blockers - masks[sqr]) & masks[sqr];
+			} while (blockers != 0);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the squares that could block a slider on this square, leaving out
+	 * the last square in each direction since a piece there can't block anything.
+	 *
+	 * @param sqr   int index of the square the piece is on
+	 * @param steps row and file steps of the directions the piece slides along
+	 * @return long bitboard of the squares that can block the piece
+	 */
+	private static long findBlockerMask(int sqr, int[][] steps) {
+		long mask = 0;
+		for (int[] step : steps) {
+			int row = (sqr / Board.WIDTH) + step[0];
+			int file = (sqr % Board.WIDTH) + step[1];
+			while (isOnTheBoard(row + step[0], file + step[1])) {
+				mask |= 1L << ((row * Board.WIDTH) + file);
+				row += step[0];
+				file += step[1];
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns the squares a slider attacks by walking each ray one square at a
+	 * time. This is only used to fill the lookup tables.
+	 *
+	 * @param sqr      int index of the square the piece is on
+	 * @param blockers long bitboard of the occupied squares
+	 * @param steps    row and file steps of the directions the piece slides along
+	 * @return long bitboard of the attacked squares
+	 */
+	private static long findSliderAttacksSlowly(int sqr, long blockers, int[][] steps) {
+		long attacks = 0;
+		for (int[] step : steps) {
+			int row = (sqr / Board.WIDTH) + step[0];
+			int file = (sqr % Board.WIDTH) + step[1];
+			while (isOnTheBoard(row, file)) {
+				long sqrBit = 1L << ((row * Board.WIDTH) + file);
+				attacks |= sqrBit;
+				if ((blockers & sqrBit) != 0)
+					break;
+				row += step[0];
+				file += step[1];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Returns true if the row and file are on the board.
+	 *
+	 * @param row  int row of the square (0 is the 8th rank)
+	 * @param file int file of the square (0 is file A)
+	 * @return <code>true</code> if this row and file are on the board;
+	 *         <code>false</code> otherwise.
+	 */
+	private static boolean isOnTheBoard(int row, int file) {
+		return (row >= 0) && (row < Board.WIDTH) && (file >= 0) && (file < Board.WIDTH);
+	}
+
+}
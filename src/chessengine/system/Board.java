@@ -1,6 +1,6 @@
 package chessengine.system;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -41,11 +41,35 @@ public class Board {
 	/** The index of the H1 square on the board. */
 	public static final int H1_SQR = 63;
 	
+	/** Bitboard of the squares on rank 8. */
+	public static final long RANK_8_SQRS = 0xFFL;
+
+	/** Bitboard of the squares on rank 1. */
+	public static final long RANK_1_SQRS = 0xFFL << 56;
+	
 	/** The width of the board in number of squares */
 	public static final int WIDTH = 8;
 	
-	/** The squares of the board stored as a 64 character <code>String</code>. */
-	private String sqrs;
+	/** The number of squares on the board. */
+	public static final int SQR_COUNT = WIDTH * WIDTH;
+	
+	/**
+	 * One bitboard for each piece type and color, ordered by piece index. Bit n of
+	 * a bitboard is set if that piece is on the square with index n.
+	 */
+	private final long[] pieceBitboards;
+	
+	/** Bitboard of the squares occupied by white pieces. */
+	private long whiteOccupancy;
+	
+	/** Bitboard of the squares occupied by black pieces. */
+	private long blackOccupancy;
+	
+	/** The piece index on each square, so a square can be read without scanning the bitboards. */
+	private final int[] sqrPieceIndices;
+	
+	/** Zobrist key of the pieces on the board, updated whenever a square is set. */
+	private long pieceKey;
 
 	/**
 	 * Default constructor that sets the squares to the standard starting chess position.
@@ -60,7 +84,12 @@ public class Board {
 	 * @param sqrs the squares of the chess board
 	 */
 	public Board(String sqrs) {
-		this.sqrs = sqrs;
+		this.pieceBitboards = new long[Chess.PIECE_COUNT];
+		this.sqrPieceIndices = new int[SQR_COUNT];
+		for (int i = 0; i < SQR_COUNT; i++) {
+			sqrPieceIndices[i] = Chess.EMPTY_INDEX;
+			setSqr(sqrs.charAt(i), i);
+		}
 	}
 	
 	/**
@@ -69,7 +98,11 @@ public class Board {
 	 * @param otherBoard the <code>Board</code> to copy
 	 */
 	public Board(Board otherBoard) {
-		this(otherBoard.sqrs);
+		this.pieceBitboards = otherBoard.pieceBitboards.clone();
+		this.sqrPieceIndices = otherBoard.sqrPieceIndices.clone();
+		this.whiteOccupancy = otherBoard.whiteOccupancy;
+		this.blackOccupancy = otherBoard.blackOccupancy;
+		this.pieceKey = otherBoard.pieceKey;
 	}
 	
 	@Override
@@ -84,7 +117,17 @@ public class Board {
 	 * @return character contents of the square
 	 */
 	public char getSqr(int sqr) {
-		return sqrs.charAt(sqr);
+		return Chess.toPiece(sqrPieceIndices[sqr]);
+	}
+	
+	/**
+	 * Returns the piece index of the contents of a square.
+	 *
+	 * @param sqr int value the square
+	 * @return int piece index of the contents of the square
+	 */
+	public int getPieceIndex(int sqr) {
+		return sqrPieceIndices[sqr];
 	}
 	
 	/**
@@ -95,21 +138,92 @@ public class Board {
 	 * @param sqr       int value of the square to be updated
 	 */
 	public void setSqr(char charToPut, int sqr) {
-		sqrs = sqrs.substring(0, sqr) + charToPut + sqrs.substring(sqr + 1);
+		setPieceIndex(Chess.toPieceIndex(charToPut), sqr);
+	}
+	
+	/**
+	 * Sets this square on the board to either empty or to the piece with this
+	 * piece index. The bitboards, occupancy masks and piece key are updated to
+	 * match.
+	 *
+	 * @param pieceIndex int piece index of the piece or <code>EMPTY_INDEX</code>
+	 * @param sqr        int value of the square to be updated
+	 */
+	public void setPieceIndex(int pieceIndex, int sqr) {
+		long sqrBit = 1L << sqr;
+		int oldPieceIndex = sqrPieceIndices[sqr];
+		pieceKey ^= Zobrist.pieceKey(oldPieceIndex, sqr) ^ Zobrist.pieceKey(pieceIndex, sqr);
+		if (oldPieceIndex != Chess.EMPTY_INDEX) {
+			pieceBitboards[oldPieceIndex] &= ~sqrBit;
+			whiteOccupancy &= ~sqrBit;
+			blackOccupancy &= ~sqrBit;
+		}
+		sqrPieceIndices[sqr] = pieceIndex;
+		if (pieceIndex != Chess.EMPTY_INDEX) {
+			pieceBitboards[pieceIndex] |= sqrBit;
+			if (pieceIndex < Chess.BK_PAWN_INDEX)
+				whiteOccupancy |= sqrBit;
+			else
+				blackOccupancy |= sqrBit;
+		}
+	}
+	
+	/**
+	 * Returns the Zobrist key of the pieces on the board.
+	 *
+	 * @return long XOR of the keys of every piece on its square
+	 */
+	public long getPieceKey() {
+		return pieceKey;
+	}
+	
+	/**
+	 * Returns the bitboard of the squares that this piece is on.
+	 * 
+	 * @param pieceIndex int piece index of the piece
+	 * @return long bitboard with a bit set for every square holding this piece
+	 */
+	public long getBitboard(int pieceIndex) {
+		return pieceBitboards[pieceIndex];
+	}
+	
+	/**
+	 * Returns the bitboard of the squares occupied by pieces of one color.
+	 * 
+	 * @param white boolean whether the occupancy of white pieces is returned
+	 * @return long bitboard with a bit set for every square holding a piece of that color
+	 */
+	public long getOccupancy(boolean white) {
+		if (white)
+			return whiteOccupancy;
+		else
+			return blackOccupancy;
+	}
+	
+	/**
+	 * Returns the bitboard of the squares occupied by any piece.
+	 * 
+	 * @return long bitboard with a bit set for every square holding a piece
+	 */
+	public long getOccupancy() {
+		return whiteOccupancy | blackOccupancy;
 	}
 	
 	/**
 	 * Updates the board so that the rook portion of a castling move has been made.
 	 * 
-	 * @param move the <code>Move</code> to update for
-	 */
-	public void updateRookForCastlingMove(Move move) {
-		if (move.isKingsideCastling()) {
-			setSqr(getSqr(move.getEndSqr() + Chess.EAST_1), move.getEndSqr() + Chess.WEST_1);
-			setSqr(Chess.EMPTY, move.getEndSqr() + Chess.EAST_1);
-		} else if (move.isQueensideCastling()) {
-			setSqr(getSqr(move.getEndSqr() + Chess.WEST_2), move.getEndSqr() + Chess.EAST_1);
-			setSqr(Chess.EMPTY, move.getEndSqr() + Chess.WEST_2);
+	 * @param move int packed move to update for
+	 */
+	public void updateRookForCastlingMove(int move) {
+		if (Move.isCastling(move)) {
+			int kingEndSqr = Move.getEndSqr(move);
+			if (kingEndSqr > Move.getStartSqr(move)) {
+				setPieceIndex(getPieceIndex(kingEndSqr + Chess.EAST_1), kingEndSqr + Chess.WEST_1);
+				setPieceIndex(Chess.EMPTY_INDEX, kingEndSqr + Chess.EAST_1);
+			} else {
+				setPieceIndex(getPieceIndex(kingEndSqr + Chess.WEST_2), kingEndSqr + Chess.EAST_1);
+				setPieceIndex(Chess.EMPTY_INDEX, kingEndSqr + Chess.WEST_2);
+			}
 		}
 	}
 	
@@ -117,37 +231,80 @@ public class Board {
 	 * Updates the board so that the pawn capturing portion of an en passant move has been made.
 	 * This is notable because the capturing pawn won't end up on the square of the pawn it is capturing.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to update for
 	 */
-	public void updateCapturedPawnForEnPassantMove(Move move) {
-		if (move.isEnPassant()) {
-			if (move.getPiece() == Chess.WH_PAWN)
-				setSqr(Chess.EMPTY, move.getEndSqr() + Chess.SOUTH_1);
-			else
-				setSqr(Chess.EMPTY, move.getEndSqr() + Chess.NORTH_1);
+	public void updateCapturedPawnForEnPassantMove(int move) {
+		if (Move.isEnPassant(move))
+			setPieceIndex(Chess.EMPTY_INDEX, findEnPassantCapturedSqr(move));
+	}
+	
+	/**
+	 * Restores the board so that the rook portion of a castling move has been taken back.
+	 * 
+	 * @param move int packed move to restore for
+	 */
+	public void restoreRookForCastlingMove(int move) {
+		if (Move.isCastling(move)) {
+			int kingEndSqr = Move.getEndSqr(move);
+			if (kingEndSqr > Move.getStartSqr(move)) {
+				setPieceIndex(getPieceIndex(kingEndSqr + Chess.WEST_1), kingEndSqr + Chess.EAST_1);
+				setPieceIndex(Chess.EMPTY_INDEX, kingEndSqr + Chess.WEST_1);
+			} else {
+				setPieceIndex(getPieceIndex(kingEndSqr + Chess.EAST_1), kingEndSqr + Chess.WEST_2);
+				setPieceIndex(Chess.EMPTY_INDEX, kingEndSqr + Chess.EAST_1);
+			}
 		}
 	}
 	
 	/**
 	 * Updates the square that the piece originated from to be empty.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to update for
+	 */
+	public void updateStartSqrContents(int move) {
+		setPieceIndex(Chess.EMPTY_INDEX, Move.getStartSqr(move));
+	}
+	
+	/**
+	 * Updates the square on the board that the piece ends for a move.
+	 * 
+	 * @param move int packed move to update for
 	 */
-	public void updateStartSqrContents(Move move) {
-		setSqr(Chess.EMPTY, move.getStartSqr());
+	public void updateEndSqrContents(int move) {
+		if (Move.isPromotion(move))
+			setPieceIndex(Move.getPromoteToIndex(move), Move.getEndSqr(move));
+		else
+			setPieceIndex(Move.getPieceIndex(move), Move.getEndSqr(move));
 	}
 	
 	/**
-	 * Updates the square on the board that the piece ends for a <code>Move</code>.
+	 * Restores the squares that a move started and ended on, putting the moving
+	 * piece back and any captured piece back. Accounts for en passant and castling.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to restore for
 	 */
-	public void updateEndSqrContents(Move move) {
-		char pieceToPut = move.getPiece();
-		if (move.isPromotion()) {
-			pieceToPut = move.getPromoteTo();
+	public void restoreSqrContents(int move) {
+		setPieceIndex(Move.getPieceIndex(move), Move.getStartSqr(move));
+		if (Move.isEnPassant(move)) {
+			setPieceIndex(Chess.EMPTY_INDEX, Move.getEndSqr(move));
+			setPieceIndex(Move.getCapturedIndex(move), findEnPassantCapturedSqr(move));
+		} else {
+			setPieceIndex(Move.getCapturedIndex(move), Move.getEndSqr(move));
 		}
-		setSqr(pieceToPut, move.getEndSqr());
+		restoreRookForCastlingMove(move);
+	}
+	
+	/**
+	 * Returns the square of the pawn that is captured by an en passant move.
+	 * 
+	 * @param move int packed en passant move
+	 * @return int index of the square the captured pawn is on
+	 */
+	public static int findEnPassantCapturedSqr(int move) {
+		if (Move.getPieceIndex(move) == Chess.WH_PAWN_INDEX)
+			return Move.getEndSqr(move) + Chess.SOUTH_1;
+		else
+			return Move.getEndSqr(move) + Chess.NORTH_1;
 	}
 	
 	/**
@@ -158,8 +315,11 @@ public class Board {
 	 */
 	public int getTotalPieceValues() {
 		int totalPieceValues = 0;
-		for (int i = 0; i < sqrs.length(); i++) {
-			totalPieceValues += getPieceValue(getSqr(i), i);
+		for (int pieceIndex = 0; pieceIndex < Chess.PIECE_COUNT; pieceIndex++) {
+			char piece = Chess.toPiece(pieceIndex);
+			for (long pieces = pieceBitboards[pieceIndex]; pieces != 0; pieces &= pieces - 1) {
+				totalPieceValues += getPieceValue(piece, Long.numberOfTrailingZeros(pieces));
+			}
 		}
 		return totalPieceValues;
 	}
@@ -212,29 +372,14 @@ public class Board {
 	 * @return int value where the king is on the board
 	 */
 	public int findKingSqr(boolean findWhiteKing) {
-		for (int i = 0; i < sqrs.length(); i++) {
-			if ((findWhiteKing && (getSqr(i) == Chess.WH_KING)) || (!findWhiteKing && (getSqr(i) == Chess.BK_KING))) {
-				return i;
-			}
-		}
-		throw new NoSuchElementException("King couldn't be found");
-	}
-	
-	/**
-	 * Returns true if the pawn is on its starting square and the 2 squares ahead are empty.
-	 * 
-	 * @param pawnSqr int index of the square that the pawn is on
-	 * @param movementVector int direction vector of the pawn's movement
-	 * @return <code>true</code> if this pawn can make the special 2 square move;
-	 *         <code>false</code> otherwise.
-	 */
-	public boolean pawnCanMove2SqrsAhead(int pawnSqr, int movementVector) {
-		if (hasExceededAnEdge(pawnSqr + movementVector + movementVector, movementVector))
-			return false;
-		if (!isEmptySqr(pawnSqr + movementVector) || !isEmptySqr(pawnSqr + movementVector + movementVector))
-			return false;
-		return ((getSqr(pawnSqr) == Chess.WH_PAWN) && (isRank2Sqr(pawnSqr)))
-				|| ((getSqr(pawnSqr) == Chess.BK_PAWN) && (isRank7Sqr(pawnSqr)));
+		long king;
+		if (findWhiteKing)
+			king = pieceBitboards[Chess.WH_KING_INDEX];
+		else
+			king = pieceBitboards[Chess.BK_KING_INDEX];
+		if (king == 0)
+			throw new NoSuchElementException("King couldn't be found");
+		return Long.numberOfTrailingZeros(king);
 	}
 	
 	/**
@@ -248,54 +393,26 @@ public class Board {
 		return new Move(getSqr(startSqr), startSqr, endSqr, getSqr(endSqr));
 	}
 	
-	/**
-	 * Returns a <code>LinkedList</code> with 4 moves (one for each type of promotion). 
-	 * The moves will be identical except for the promotion type.
-	 * 
-	 * @param move the <code>Move</code> which is promotion
-	 * @return the <code>LinkedList</code> with the promotion moves
-	 */
-	public LinkedList<Move> constructPromotionMove(Move move){
-		LinkedList<Move> moveInList = new LinkedList<>();
-		char[] promoteTypes;
-		if (move.getPiece() == Chess.WH_PAWN) {
-			promoteTypes = Chess.WH_PROMOTING_TYPES;
-		} else {
-			promoteTypes = Chess.BK_PROMOTING_TYPES;
-		}
-		for (int i = 0; i < promoteTypes.length; i++) {
-			moveInList.add(move.clone());
-			moveInList.get(i).setPromoteTo(promoteTypes[i]);
-		}
-		return moveInList;
-	}
-	
 	/**
 	 * Returns true if the move puts a pawn into a position where it can be captured
-	 * en passant.
+	 * en passant. This must be called after the move has been made on the board.
 	 * 
-	 * @param move the Move to test
+	 * @param move int packed move to test
 	 * @return <code>true</code> if the move is a pawn advancing 2 squares and
 	 *         allowing itself to be captured en passant;
 	 *         <code>false</code> otherwise.
 	 */
-	public boolean isAllowsEnPassant(Move move) {
-		if ((move.getPiece() == Chess.WH_PAWN) || (move.getPiece() == Chess.BK_PAWN)) {
-	        char east1SqrContents = 0;
-	        char west1SqrContents = 0;
-	        
-	        if (!Board.isFileHSqr(move.getEndSqr())) {
-	            east1SqrContents = getSqr(move.getEndSqr() + Chess.EAST_1);
-	        }
-	        if (!Board.isFileASqr(move.getEndSqr())) {
-	            west1SqrContents = getSqr(move.getEndSqr() + Chess.WEST_1);
-	        }
-	        return (((move.getStartSqr() + Chess.NORTH_2) == move.getEndSqr())
-	                && ((east1SqrContents == Chess.BK_PAWN) || (west1SqrContents == Chess.BK_PAWN)))
-	                || (((move.getStartSqr() + Chess.SOUTH_2) == move.getEndSqr())
-	                && ((east1SqrContents == Chess.WH_PAWN) || (west1SqrContents == Chess.WH_PAWN)));
-	    }
-	    return false;
+	public boolean isAllowsEnPassant(int move) {
+		if (!Move.isPawnDoublePush(move))
+			return false;
+		int endSqr = Move.getEndSqr(move);
+		int opposingPawnIndex;
+		if (Move.getPieceIndex(move) == Chess.WH_PAWN_INDEX)
+			opposingPawnIndex = Chess.BK_PAWN_INDEX;
+		else
+			opposingPawnIndex = Chess.WH_PAWN_INDEX;
+		return (!Board.isFileHSqr(endSqr) && (getPieceIndex(endSqr + Chess.EAST_1) == opposingPawnIndex))
+				|| (!Board.isFileASqr(endSqr) && (getPieceIndex(endSqr + Chess.WEST_1) == opposingPawnIndex));
 	}
 	
 	/**
@@ -306,7 +423,7 @@ public class Board {
 	 *         <code>false</code> otherwise.
 	 */
 	public boolean isEmptySqr(int sqr) {
-		return getSqr(sqr) == Chess.EMPTY;
+		return ((whiteOccupancy | blackOccupancy) & (1L << sqr)) == 0;
 	}
 	
 	/**
@@ -318,8 +435,7 @@ public class Board {
 	 *         <code>false</code> otherwise.
 	 */
 	public boolean isCapturableSqr(int sqr, boolean whiteToPlay) {
-		return (whiteToPlay && Chess.isBlackPiece(getSqr(sqr))) 
-				|| (!whiteToPlay && Chess.isWhitePiece(getSqr(sqr)));
+		return (getOccupancy(!whiteToPlay) & (1L << sqr)) != 0;
 	}
 	
 	/**
@@ -330,7 +446,7 @@ public class Board {
 	@Override
 	public String toString() {
 		String printBoard = "";
-		for (int i = 0; i < sqrs.length(); i++) {
+		for (int i = 0; i < SQR_COUNT; i++) {
 			printBoard += getSqr(i) + " ";
 			if (Board.isFileHSqr(i)) {
 				printBoard += "\n";
@@ -348,26 +464,9 @@ public class Board {
 		if (getClass() != obj.getClass())
 			return false;
 		Board other = (Board) obj;
-		return sqrs.equals(other.sqrs);
+		return Arrays.equals(sqrPieceIndices, other.sqrPieceIndices);
 	}
 
-	/**
-	 * Returns true if this vector put this square over the edge of the board.
-	 * 
-	 * @param sqr int index of the square to test
-	 * @param vector the direction vector that was used to find test square 
-	 * @return <code>true</code> if this square has gone over any of the edges of the board; <code>false</code>
-	 *         otherwise.
-	 */
-	public static boolean hasExceededAnEdge(int sqr, int vector) {
-		if (!isOnTheBoard(sqr))
-			return true;
-		return (Chess.containsEast1Direction(vector) && isFileHSqr(sqr + Chess.WEST_1))
-				|| (Chess.containsWest1Direction(vector) && isFileASqr(sqr + Chess.EAST_1))
-				|| (Chess.containsEast2Direction(vector) && (isFileHSqr(sqr + Chess.WEST_2) || isFileGSqr(sqr + Chess.WEST_2)))
-				|| (Chess.containsWest2Direction(vector) && (isFileASqr(sqr + Chess.EAST_2) || isFileBSqr(sqr + Chess.EAST_2)));
-	}
-	
 	/**
 	 * Returns true if this square is on the board.
 	 * 
@@ -423,6 +522,31 @@ public class Board {
 		return (sqr >= A8_SQR) && (sqr <= H8_SQR);
 	}
 
+	/**
+	 * Returns the algebraic name of the square, such as <code>"e4"</code>.
+	 *
+	 * @param sqr int index of the square
+	 * @return String file letter and rank number of the square
+	 */
+	public static String toSqrName(int sqr) {
+		return "" + (char) ('a' + (sqr % WIDTH)) + (char) ('8' - (sqr / WIDTH));
+	}
+
+	/**
+	 * Returns the index of the square with this algebraic name.
+	 *
+	 * @param sqrName String file letter and rank number of the square, such as
+	 *                <code>"e4"</code>
+	 * @return int index of the square
+	 * @throws IllegalArgumentException if this isn't the name of a square
+	 */
+	public static int toSqr(String sqrName) {
+		if ((sqrName.length() != 2) || (sqrName.charAt(0) < 'a') || (sqrName.charAt(0) > 'h')
+				|| (sqrName.charAt(1) < '1') || (sqrName.charAt(1) > '8'))
+			throw new IllegalArgumentException("Not a square: " + sqrName);
+		return (('8' - sqrName.charAt(1)) * WIDTH) + (sqrName.charAt(0) - 'a');
+	}
+
 	/**
 	 * Returns true if the square is on file A of the board.
 	 * 
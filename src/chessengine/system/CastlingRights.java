@@ -8,6 +8,18 @@ package chessengine.system;
  */
 public class CastlingRights {
 
+	/** Bit of the packed rights for white castling kingside. */
+	private static final int WHITE_KINGSIDE_BIT = 1;
+
+	/** Bit of the packed rights for white castling queenside. */
+	private static final int WHITE_QUEENSIDE_BIT = 2;
+
+	/** Bit of the packed rights for black castling kingside. */
+	private static final int BLACK_KINGSIDE_BIT = 4;
+
+	/** Bit of the packed rights for black castling queenside. */
+	private static final int BLACK_QUEENSIDE_BIT = 8;
+
 	/** Whether white can castle kingside. */
 	private boolean whiteCanKingside;
 
@@ -58,12 +70,42 @@ public class CastlingRights {
 		return new CastlingRights(this);
 	}
 
+	/**
+	 * Returns all 4 castling rights packed into the lowest 4 bits of an int.
+	 * 
+	 * @return int with a bit set for each castling ability that remains
+	 */
+	public int getPackedRights() {
+		int packedRights = 0;
+		if (whiteCanKingside)
+			packedRights |= WHITE_KINGSIDE_BIT;
+		if (whiteCanQueenside)
+			packedRights |= WHITE_QUEENSIDE_BIT;
+		if (blackCanKingside)
+			packedRights |= BLACK_KINGSIDE_BIT;
+		if (blackCanQueenside)
+			packedRights |= BLACK_QUEENSIDE_BIT;
+		return packedRights;
+	}
+
+	/**
+	 * Sets all 4 castling rights from rights packed by <code>getPackedRights()</code>.
+	 * 
+	 * @param packedRights int with a bit set for each castling ability
+	 */
+	public void setPackedRights(int packedRights) {
+		whiteCanKingside = (packedRights & WHITE_KINGSIDE_BIT) != 0;
+		whiteCanQueenside = (packedRights & WHITE_QUEENSIDE_BIT) != 0;
+		blackCanKingside = (packedRights & BLACK_KINGSIDE_BIT) != 0;
+		blackCanQueenside = (packedRights & BLACK_QUEENSIDE_BIT) != 0;
+	}
+
 	/**
 	 * Updates both colors' castling abilities for king and non king moves.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to update for
 	 */
-	public void updateRightsForMove(Move move) {
+	public void updateRightsForMove(int move) {
 		updateWhiteRights(move);
 		updateBlackRights(move);
 	}
@@ -71,15 +113,17 @@ public class CastlingRights {
 	/**
 	 * Updates white's castling abilities for king and non king moves.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to update for
 	 */
-	private void updateWhiteRights(Move move) {
-		if (move.getPiece() == Chess.WH_KING) {
+	private void updateWhiteRights(int move) {
+		int startSqr = Move.getStartSqr(move);
+		int endSqr = Move.getEndSqr(move);
+		if (Move.getPieceIndex(move) == Chess.WH_KING_INDEX) {
 			whiteCanKingside = false;
 			whiteCanQueenside = false;
-		} else if (whiteCanKingside && ((move.getStartSqr() == Board.H1_SQR) || (move.getEndSqr() == Board.H1_SQR))) {
+		} else if (whiteCanKingside && ((startSqr == Board.H1_SQR) || (endSqr == Board.H1_SQR))) {
 			whiteCanKingside = false;
-		} else if (whiteCanQueenside && ((move.getStartSqr() == Board.A1_SQR) || (move.getEndSqr() == Board.A1_SQR))) {
+		} else if (whiteCanQueenside && ((startSqr == Board.A1_SQR) || (endSqr == Board.A1_SQR))) {
 			whiteCanQueenside = false;
 		}
 	}
@@ -87,15 +131,17 @@ public class CastlingRights {
 	/**
 	 * Updates black's castling abilities for king and non king moves.
 	 * 
-	 * @param move the <code>Move</code> to update for
+	 * @param move int packed move to update for
 	 */
-	private void updateBlackRights(Move move) {
-		if (move.getPiece() == Chess.WH_KING) {
-			whiteCanKingside = false;
-			whiteCanQueenside = false;
-		} else if (blackCanKingside && ((move.getStartSqr() == Board.H8_SQR) || (move.getEndSqr() == Board.H8_SQR))) {
+	private void updateBlackRights(int move) {
+		int startSqr = Move.getStartSqr(move);
+		int endSqr = Move.getEndSqr(move);
+		if (Move.getPieceIndex(move) == Chess.BK_KING_INDEX) {
+			blackCanKingside = false;
+			blackCanQueenside = false;
+		} else if (blackCanKingside && ((startSqr == Board.H8_SQR) || (endSqr == Board.H8_SQR))) {
 			blackCanKingside = false;
-		} else if (blackCanQueenside && ((move.getStartSqr() == Board.A8_SQR) || (move.getEndSqr() == Board.A8_SQR))) {
+		} else if (blackCanQueenside && ((startSqr == Board.A8_SQR) || (endSqr == Board.A8_SQR))) {
 			blackCanQueenside = false;
 		}
 	}
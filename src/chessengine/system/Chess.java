@@ -136,6 +136,103 @@ public final class Chess {
 	/** Character representations of the pieces that black pawns can promote to. */
 	public static final char[] BK_PROMOTING_TYPES = {BK_KNIGHT, BK_BISHOP, BK_ROOK, BK_QUEEN};
 
+	/** Index of the white pawn in piece indexed arrays (such as the board's bitboards). */
+	public static final int WH_PAWN_INDEX = 0;
+
+	/** Index of the white knight in piece indexed arrays. */
+	public static final int WH_KNIGHT_INDEX = 1;
+
+	/** Index of the white bishop in piece indexed arrays. */
+	public static final int WH_BISHOP_INDEX = 2;
+
+	/** Index of the white rook in piece indexed arrays. */
+	public static final int WH_ROOK_INDEX = 3;
+
+	/** Index of the white queen in piece indexed arrays. */
+	public static final int WH_QUEEN_INDEX = 4;
+
+	/** Index of the white king in piece indexed arrays. */
+	public static final int WH_KING_INDEX = 5;
+
+	/** Index of the black pawn in piece indexed arrays. */
+	public static final int BK_PAWN_INDEX = 6;
+
+	/** Index of the black knight in piece indexed arrays. */
+	public static final int BK_KNIGHT_INDEX = 7;
+
+	/** Index of the black bishop in piece indexed arrays. */
+	public static final int BK_BISHOP_INDEX = 8;
+
+	/** Index of the black rook in piece indexed arrays. */
+	public static final int BK_ROOK_INDEX = 9;
+
+	/** Index of the black queen in piece indexed arrays. */
+	public static final int BK_QUEEN_INDEX = 10;
+
+	/** Index of the black king in piece indexed arrays. */
+	public static final int BK_KING_INDEX = 11;
+
+	/** Added to the index of a white piece to get the index of the black piece of the same type. */
+	public static final int BK_PIECE_OFFSET = BK_PAWN_INDEX - WH_PAWN_INDEX;
+
+	/** Index used for an empty square. */
+	public static final int EMPTY_INDEX = 12;
+
+	/** The number of distinct pieces (6 types for each of the 2 colors). */
+	public static final int PIECE_COUNT = 12;
+
+	/** Character representations of the pieces ordered by piece index. */
+	private static final char[] PIECES_BY_INDEX = { WH_PAWN, WH_KNIGHT, WH_BISHOP, WH_ROOK, WH_QUEEN, WH_KING,
+			BK_PAWN, BK_KNIGHT, BK_BISHOP, BK_ROOK, BK_QUEEN, BK_KING, EMPTY };
+
+	/**
+	 * Returns the piece index for the character representation of a piece.
+	 *
+	 * @param piece character representing the piece or an empty square
+	 * @return int index of the piece; <code>EMPTY_INDEX</code> if this isn't a
+	 *         piece
+	 */
+	public static int toPieceIndex(char piece) {
+		switch (piece) {
+		case WH_PAWN:
+			return WH_PAWN_INDEX;
+		case WH_KNIGHT:
+			return WH_KNIGHT_INDEX;
+		case WH_BISHOP:
+			return WH_BISHOP_INDEX;
+		case WH_ROOK:
+			return WH_ROOK_INDEX;
+		case WH_QUEEN:
+			return WH_QUEEN_INDEX;
+		case WH_KING:
+			return WH_KING_INDEX;
+		case BK_PAWN:
+			return BK_PAWN_INDEX;
+		case BK_KNIGHT:
+			return BK_KNIGHT_INDEX;
+		case BK_BISHOP:
+			return BK_BISHOP_INDEX;
+		case BK_ROOK:
+			return BK_ROOK_INDEX;
+		case BK_QUEEN:
+			return BK_QUEEN_INDEX;
+		case BK_KING:
+			return BK_KING_INDEX;
+		default:
+			return EMPTY_INDEX;
+		}
+	}
+
+	/**
+	 * Returns the character representation of the piece with this piece index.
+	 *
+	 * @param pieceIndex int index of the piece
+	 * @return character representing the piece or an empty square
+	 */
+	public static char toPiece(int pieceIndex) {
+		return PIECES_BY_INDEX[pieceIndex];
+	}
+
 	/**
 	 * Returns true if the piece is white.
 	 * 
@@ -159,49 +256,5 @@ public final class Chess {
 		return piece == BK_KING || (piece == BK_ROOK) || (piece == BK_KNIGHT) || (piece == BK_BISHOP)
 				|| (piece == BK_QUEEN) || (piece == BK_PAWN);
 	}
-	
-	/**
-	 * Returns true if the vector contains in any way the east 1 direction vector.
-	 * 
-	 * @param vector int to test
-	 * @return <code>true</code> if this vector contains east 1 vector; <code>false</code>
-	 *         otherwise.
-	 */
-	public static boolean containsEast1Direction(int vector) {
-		return (vector == EAST_1) || (vector == NORTH_EAST_1) || (vector == SOUTH_EAST_1);
-	}
-	
-	/**
-	 * Returns true if the vector contains in any way the west 1 direction vector.
-	 * 
-	 * @param vector int to test
-	 * @return <code>true</code> if this vector contains west 1 vector; <code>false</code>
-	 *         otherwise.
-	 */
-	public static boolean containsWest1Direction(int vector) {
-		return (vector == WEST_1) || (vector == NORTH_WEST_1) || (vector == SOUTH_WEST_1);
-	}
-	
-	/**
-	 * Returns true if the vector contains in any way the east 2 direction vector.
-	 * 
-	 * @param vector int to test
-	 * @return <code>true</code> if this vector contains east 2 vector; <code>false</code>
-	 *         otherwise.
-	 */
-	public static boolean containsEast2Direction(int vector) {
-		return (vector == EAST_2) || (vector == (NORTH_1 + EAST_2)) || (vector == (SOUTH_1 + EAST_2));
-	}
-	
-	/**
-	 * Returns true if the vector contains in any way the west 2 direction vector.
-	 * 
-	 * @param vector int to test
-	 * @return <code>true</code> if this vector contains west 2 vector; <code>false</code>
-	 *         otherwise.
-	 */
-	public static boolean containsWest2Direction(int vector) {
-		return (vector == WEST_2) || (vector == (NORTH_1 + WEST_2)) || (vector == (SOUTH_1 + WEST_2));
-	}
 
 }
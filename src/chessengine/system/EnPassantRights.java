@@ -56,6 +56,16 @@ public class EnPassantRights {
 		return capturableSqr == sqr;
 	}
 
+	/**
+	 * Returns the square of the pawn that can be captured en passant.
+	 * 
+	 * @return index of the capturable pawn's square; a negative value if no pawn
+	 *         can be captured en passant
+	 */
+	public int getCapturableSqr() {
+		return capturableSqr;
+	}
+
 	/**
 	 * Sets a square as capturable by en passant.
 	 * 
@@ -1,6 +1,11 @@
 package chessengine.system;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Calculation and evaluation engine for a chess position.
@@ -15,7 +20,65 @@ public class Engine {
 	/** <code>Position</code> to be searched for the top move. */
 	Position position;
 	
-	private static final int MAX_DEPTH = 0;
+	/** The most plies deep that the engine keeps move buffers for. */
+	public static final int MAX_PLY = 64;
+	
+	/**
+	 * Score of checkmating on the current move. A mate found deeper in the search is scored as this
+	 * less the number of plies until mate, so faster mates score higher.
+	 */
+	public static final int MATE_SCORE = 30000;
+	
+	/** Score of a drawn position, such as stalemate. */
+	public static final int DRAW_SCORE = 0;
+	
+	/** The number of plies searched when no depth is given. */
+	public static final int DEFAULT_DEPTH = 4;
+	
+	/** The number of plies this engine searches. */
+	private int searchDepth;
+	
+	/** Megabytes used by the transposition table when no size is given. */
+	public static final int DEFAULT_HASH_SIZE_MB = 16;
+	
+	/** Results of earlier searches of positions, which can be shared with other engines. */
+	private final TranspositionTable transpositionTable;
+	
+	/** Decides when the current search should stop. */
+	private final TimeManager timeManager;
+	
+	/** Margins of the pruning the search does near the leaves. */
+	private SearchParameters searchParameters = new SearchParameters();
+	
+	/** The number of threads searching when no count is given. */
+	public static final int DEFAULT_THREAD_COUNT = 1;
+	
+	/** One worker for each search thread; the first is the main worker, run on the calling thread. */
+	private SearchWorker[] workers;
+	
+	/** Whether the current search is over and every worker should stop. */
+	private volatile boolean stopRequested;
+	
+	/** Whether the main worker has completed an iteration of the current search, so it has a move. */
+	private volatile boolean iterationCompleted;
+	
+	/** Whether the workers split nodes across a fork-join pool rather than each searching the root. */
+	private boolean forkJoinSearch;
+	
+	/** Pool the split moves of a fork-join search run on, with one thread for each search thread. */
+	private ForkJoinPool forkJoinPool;
+	
+	/** Every worker created to search split moves, so their nodes can be counted. */
+	private final List<SearchWorker> splitWorkers = new ArrayList<>();
+	
+	/** Workers for split moves that aren't searching a move. */
+	private final Queue<SearchWorker> idleSplitWorkers = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Value of each piece in centipawns regardless of its location, indexed by piece index (kings
+	 * and empty squares are 0). Used to judge what a capture gains rather than to evaluate.
+	 */
+	public static final int[] PIECE_VALUES = {100, 300, 310, 500, 900, 0, 100, 300, 310, 500, 900, 0, 0};
 	
 	/** Pawn values based on location (each integer corresponds to a square on the board). */
 	public static final int[] PAWN_VALUES = {0, 0, 0, 0, 0, 0, 0, 0, 
@@ -110,98 +173,314 @@ public class Engine {
 	 * @param position <code>Position</code> to be searched for the top move
 	 */
 	public Engine(Position position) {
+		this(position, DEFAULT_DEPTH);
+	}
+	
+	/**
+	 * Class constructor to set the position to search and how deep to search it.
+	 * 
+	 * @param position    <code>Position</code> to be searched for the top move
+	 * @param searchDepth int number of plies to search
+	 */
+	public Engine(Position position, int searchDepth) {
+		this(position, searchDepth, DEFAULT_HASH_SIZE_MB, false);
+	}
+	
+	/**
+	 * Class constructor to set the position to search, how deep to search it and the size and kind
+	 * of transposition table to create. An off heap table lives in native memory that the garbage
+	 * collector never scans, which keeps collection pauses short for tables of several gigabytes.
+	 * 
+	 * @param position    <code>Position</code> to be searched for the top move
+	 * @param searchDepth int number of plies to search
+	 * @param hashSizeMb  int megabytes to use for the transposition table
+	 * @param offHeapHash boolean whether the transposition table is stored outside the Java heap
+	 */
+	public Engine(Position position, int searchDepth, int hashSizeMb, boolean offHeapHash) {
+		this(position, searchDepth,
+				offHeapHash ? new OffHeapTranspositionTable(hashSizeMb) : new HeapTranspositionTable(hashSizeMb));
+	}
+	
+	/**
+	 * Class constructor to set the position to search, how deep to search it and the
+	 * transposition table to use. The table can be shared by engines searching on other threads.
+	 * 
+	 * @param position           <code>Position</code> to be searched for the top move
+	 * @param searchDepth        int number of plies to search
+	 * @param transpositionTable <code>TranspositionTable</code> of earlier search results
+	 */
+	public Engine(Position position, int searchDepth, TranspositionTable transpositionTable) {
 		this.position = position;
+		this.timeManager = new TimeManager();
+		this.transpositionTable = transpositionTable;
+		setSearchDepth(searchDepth);
+		setThreadCount(DEFAULT_THREAD_COUNT);
 	}
 	
 	/**
-	 * Returns the top move (as decided by the engine) for a position. 
-	 * The engine searches to a hard coded depth of 3. 
-	 * If no legal moves are found, a {@code NoLegalMovesException} will be thrown.
+	 * Returns the transposition table this engine stores its search results in.
 	 * 
-	 * @return <code>Move</code> the top move
-	 * @throws NoLegalMovesException if there are no legal moves in the position
+	 * @return <code>TranspositionTable</code> of earlier search results
 	 */
-	public Move findTopMoveDepth3() throws NoLegalMovesException {
-		Move topMove = null;
-		int topMoveMaxReply = 1000000;
-		int maxReplyDepth1 = -1000000;
-		int maxReplyDepth2 = 1000000;
-		
-		LinkedList<Move> legalMovesDepth1 = position.findLegalMoves();
-		for (int i = 0; i < legalMovesDepth1.size(); i++) {
-			maxReplyDepth1 = -1000000;
-			Position tempPositionDepth1 = position.clone();
-			tempPositionDepth1.makeMove(legalMovesDepth1.get(i));
-			
-			LinkedList<Move> legalMovesDepth2 = tempPositionDepth1.findLegalMoves();
-			for (int j = 0; j < legalMovesDepth2.size(); j++) {
-				maxReplyDepth2 = 1000000;
-				Position tempPositionDepth2 = tempPositionDepth1.clone();
-				tempPositionDepth2.makeMove(legalMovesDepth2.get(j));
-			
-				LinkedList<Move> legalMovesDepth3 = tempPositionDepth2.findLegalMoves();
-				for (int k = 0; k < legalMovesDepth3.size(); k++) {
-					Position tempPositionDepth3 = tempPositionDepth2.clone();
-					tempPositionDepth3.makeMove(legalMovesDepth3.get(k));
-					
-					int evaluationDepth3 = position.evaluate();
-					if (evaluationDepth3 < maxReplyDepth2)
-						maxReplyDepth2 = evaluationDepth3;
-				}
-				
-				if (maxReplyDepth2 > maxReplyDepth1)
-					maxReplyDepth1 = maxReplyDepth2;
-			}
-			
-			if (maxReplyDepth1 < topMoveMaxReply) {
-				topMoveMaxReply = maxReplyDepth1;
-				topMove = legalMovesDepth1.get(i);
-			}
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+	
+	/**
+	 * Returns the number of plies this engine searches.
+	 * 
+	 * @return int search depth in plies
+	 */
+	public int getSearchDepth() {
+		return searchDepth;
+	}
+	
+	/**
+	 * Sets the number of plies this engine searches.
+	 * 
+	 * @param searchDepth int search depth in plies
+	 * @throws IllegalArgumentException if the depth is less than 1 or not less than <code>MAX_PLY</code>
+	 */
+	public void setSearchDepth(int searchDepth) {
+		if ((searchDepth < 1) || (searchDepth >= MAX_PLY))
+			throw new IllegalArgumentException("Search depth must be from 1 to " + (MAX_PLY - 1) + ": " + searchDepth);
+		this.searchDepth = searchDepth;
+	}
+	
+	/**
+	 * Returns the pruning margins this engine searches with. Changes to them take effect from the
+	 * next search.
+	 * 
+	 * @return <code>SearchParameters</code> of the search
+	 */
+	public SearchParameters getSearchParameters() {
+		return searchParameters;
+	}
+	
+	/**
+	 * Sets the pruning margins this engine searches with, such as ones tuned by self-play.
+	 * 
+	 * @param searchParameters <code>SearchParameters</code> of the search
+	 */
+	public void setSearchParameters(SearchParameters searchParameters) {
+		this.searchParameters = searchParameters;
+	}
+	
+	/**
+	 * Returns the number of threads this engine searches with.
+	 * 
+	 * @return int thread count
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+	
+	/**
+	 * Sets the number of threads this engine searches with. With more than 1 thread, each thread
+	 * searches the same position and they share the transposition table (Lazy SMP), so each thread
+	 * adds the memory of its own move buffers and history but not of another table. In fork-join
+	 * mode, this is the parallelism of the pool the split moves run on instead.
+	 * 
+	 * @param threadCount int number of threads; 0 for one per processor
+	 * @throws IllegalArgumentException if the thread count is negative
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 0)
+			throw new IllegalArgumentException("Thread count must not be negative: " + threadCount);
+		if (threadCount == 0)
+			threadCount = Runtime.getRuntime().availableProcessors();
+		workers = new SearchWorker[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			workers[i] = new SearchWorker(this, i, transpositionTable, timeManager);
 		}
-		return topMove;
+		if (forkJoinPool != null)
+			forkJoinPool.shutdown();
+		forkJoinPool = new ForkJoinPool(threadCount);
 	}
 	
-	public Move findTopMove() throws CheckmateException, StalemateException {
-		Move topMove = null;
-		int topMoveMaxReply = Integer.MAX_VALUE;
-		LinkedList<Move> legalMoves = position.findLegalMoves();
-		for (Move move : legalMoves) {
-			Position tempPosition = position.clone();
-			tempPosition.makeMove(move);
-			int maxReply = 0;
-			try {
-				maxReply = findMaxReplyToMinimumDepth(0);
-			} catch (NoLegalMovesException e) {
-
-			}
-			if (maxReply < topMoveMaxReply) {
-				topMoveMaxReply = maxReply;
-				topMove = move;
+	/**
+	 * Returns true if this engine searches in fork-join mode.
+	 * 
+	 * @return <code>true</code> if nodes are split across a fork-join pool; <code>false</code> if
+	 *         the threads search with Lazy SMP.
+	 */
+	public boolean isForkJoinSearch() {
+		return forkJoinSearch;
+	}
+	
+	/**
+	 * Sets whether this engine searches in fork-join mode. In fork-join mode only the main worker
+	 * searches the root; at the root and at nodes deep enough, it searches the first move alone and
+	 * then the other moves in parallel on the fork-join pool (young brothers wait), cutting off the
+	 * moves still running when one of them fails high. The top move and score are picked in move
+	 * order, so unlike Lazy SMP they don't depend on which thread finishes first, which makes
+	 * searches far easier to reproduce. Only the entries the threads share in the transposition
+	 * table can still make a search differ from the last.
+	 * 
+	 * @param forkJoinSearch boolean <code>true</code> for fork-join mode; <code>false</code> for
+	 *                       Lazy SMP
+	 */
+	public void setForkJoinSearch(boolean forkJoinSearch) {
+		this.forkJoinSearch = forkJoinSearch;
+	}
+	
+	/**
+	 * Returns the number of nodes visited by the last search, by every thread.
+	 * 
+	 * @return long number of positions searched, including quiescence search
+	 */
+	public long getNodeCount() {
+		long nodeCount = 0;
+		for (SearchWorker worker : workers) {
+			nodeCount += worker.getNodeCount();
+		}
+		synchronized (splitWorkers) {
+			for (SearchWorker worker : splitWorkers) {
+				nodeCount += worker.getNodeCount();
 			}
 		}
-		return topMove;
+		return nodeCount;
 	}
 	
-	private int findMaxReplyToMinimumDepth(int depth) throws NoLegalMovesException {
-		
-		if (depth == MAX_DEPTH)
-			return position.evaluate();
+	/**
+	 * Returns true if the current search is over, so every worker should stop.
+	 * 
+	 * @return <code>true</code> if the workers should stop; <code>false</code> otherwise.
+	 */
+	boolean isStopRequested() {
+		return stopRequested;
+	}
+	
+	/**
+	 * Stops every worker of the current search, such as when it runs out of time.
+	 */
+	void requestStop() {
+		stopRequested = true;
+	}
+	
+	/**
+	 * Records that the main worker has completed an iteration, so the search can stop on time.
+	 */
+	void completeIteration() {
+		iterationCompleted = true;
+	}
+	
+	/**
+	 * Returns true if the main worker has completed an iteration of the current search.
+	 * 
+	 * @return <code>true</code> if the search has a move to return; <code>false</code> otherwise.
+	 */
+	boolean hasCompletedIteration() {
+		return iterationCompleted;
+	}
+	
+	/**
+	 * Returns an idle worker to search a split move on, creating one if every worker is busy.
+	 * 
+	 * @return <code>SearchWorker</code> that no other split move is using
+	 */
+	SearchWorker acquireSplitWorker() {
+		SearchWorker worker = idleSplitWorkers.poll();
+		if (worker != null)
+			return worker;
+		synchronized (splitWorkers) {
+			worker = new SearchWorker(this, workers.length + splitWorkers.size(), transpositionTable, timeManager);
+			splitWorkers.add(worker);
+		}
+		return worker;
+	}
+	
+	/**
+	 * Returns a worker to the idle split workers once its split move has been searched.
+	 * 
+	 * @param worker <code>SearchWorker</code> from <code>acquireSplitWorker()</code>
+	 */
+	void releaseSplitWorker(SearchWorker worker) {
+		idleSplitWorkers.add(worker);
+	}
+	
+	/**
+	 * Returns true if the score is for a position where one color can force checkmate.
+	 * 
+	 * @param score int score of a search
+	 * @return <code>true</code> if this score is a mate score; <code>false</code> otherwise.
+	 */
+	public static boolean isMateScore(int score) {
+		return Math.abs(score) > MATE_SCORE - MAX_PLY;
+	}
+	
+	/**
+	 * Searches the position to this engine's search depth and returns the top move and its score.
+	 * 
+	 * @return <code>SearchResult</code> with the top move and its score
+	 */
+	public SearchResult search() {
+		return search(searchDepth);
+	}
+	
+	/**
+	 * Searches the position to the depth and returns the top move and its score.
+	 * 
+	 * @param depth int number of plies to search
+	 * @return <code>SearchResult</code> with the top move and its score
+	 * @throws IllegalArgumentException if the depth is less than 1
+	 */
+	public SearchResult search(int depth) {
+		return search(SearchLimits.ofDepth(depth));
+	}
+	
+	/**
+	 * Searches the position with iterative deepening and returns the top move and its score from the
+	 * deepest iteration that completed. Each iteration is a negamax alpha-beta search 1 ply deeper
+	 * than the last, and searches the last iteration's top move first, within a narrow window around
+	 * the last iteration's score that is widened only if the score falls outside it. Iterations
+	 * continue until the limits' depth is reached or the time manager decides to stop; an iteration
+	 * that runs out of time is abandoned, except for the first, so there is always a move.
+	 * <p>
+	 * The main worker searches on the calling thread, and any helper workers search on threads of
+	 * their own until the main worker finishes. In fork-join mode the main worker searches on the
+	 * fork-join pool instead, and splits its nodes across the pool's threads.
+	 * <p>
+	 * Checkmate and stalemate are scored rather than thrown, so if the position has no legal moves
+	 * the result has no move and the score of the position.
+	 * 
+	 * @param limits <code>SearchLimits</code> on the depth and time of the search
+	 * @return <code>SearchResult</code> with the top move and its score
+	 */
+	public SearchResult search(SearchLimits limits) {
+		timeManager.start(limits);
+		transpositionTable.newSearch();
+		stopRequested = false;
+		iterationCompleted = false;
+		for (SearchWorker worker : workers) {
+			worker.prepare(position, limits, searchParameters);
+		}
+		if (forkJoinSearch) {
+			synchronized (splitWorkers) {
+				for (SearchWorker worker : splitWorkers) {
+					worker.clearNodeCount();
+				}
+			}
+			forkJoinPool.invoke(ForkJoinTask.adapt(workers[0]));
+			stopRequested = true;
+			return workers[0].getResult();
+		}
 		
-		int maxReply = Integer.MAX_VALUE;
-		LinkedList<Move> legalMoves = position.findLegalMoves();
-		for (Move move : legalMoves) {
-			Position tempPosition = position.clone();
-			tempPosition.makeMove(move);
-			int testMaxReply = 0;
-
+		Thread[] helperThreads = new Thread[workers.length - 1];
+		for (int i = 0; i < helperThreads.length; i++) {
+			helperThreads[i] = new Thread(workers[i + 1], "search-helper-" + (i + 1));
+			helperThreads[i].setDaemon(true);
+			helperThreads[i].start();
+		}
+		workers[0].run();
+		stopRequested = true;
+		for (Thread helperThread : helperThreads) {
 			try {
-				testMaxReply = findMaxReplyToMinimumDepth(depth + 1);
-			} catch (NoLegalMovesException e) {
-
+				helperThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
-			if (testMaxReply < maxReply)
-				maxReply = testMaxReply;
 		}
-		return maxReply;
+		return workers[0].getResult();
 	}
 }
@@ -21,9 +21,15 @@ public abstract class Game {
 	/** <code>Scanner</code> to get user input. */
 	private static final Scanner scanner = new Scanner(System.in);
 	
+	/** Milliseconds the engine spends on each move unless other limits are set. */
+	private static final long DEFAULT_ENGINE_MOVE_TIME_MS = 1000;
+	
 	/** The chess engine which can play against a user or against itself. */
 	private Engine engine;
 	
+	/** The limits on the engine's search for each of its moves. */
+	private SearchLimits engineLimits;
+	
 	/** Whether this game is currently being played. */
 	protected boolean inGame;
 	
@@ -33,7 +39,7 @@ public abstract class Game {
 	/** The moves that have previously been made in this game. */
 	private LinkedList<Move> movesMade;
 	
-	/** The message to display the draw type. */
+	/** The message to display how the game ended, such as the draw type. */
 	private String message;
 	
 	/**
@@ -56,6 +62,26 @@ public abstract class Game {
 		this.movesMade = movesMade;
 		this.message = "";
 		this.engine = new Engine(currentPosition);
+		this.engineLimits = SearchLimits.ofMoveTime(DEFAULT_ENGINE_MOVE_TIME_MS);
+	}
+	
+	/**
+	 * Sets the limits on the engine's search for each of its moves, such as a fixed time per move
+	 * or a clock with an increment.
+	 * 
+	 * @param engineLimits <code>SearchLimits</code> for the engine's moves
+	 */
+	public void setEngineLimits(SearchLimits engineLimits) {
+		this.engineLimits = engineLimits;
+	}
+	
+	/**
+	 * Sets the number of threads the engine searches with.
+	 * 
+	 * @param threadCount int number of threads; 0 for one per processor
+	 */
+	public void setEngineThreadCount(int threadCount) {
+		engine.setThreadCount(threadCount);
 	}
 	
 	/**
@@ -94,19 +120,43 @@ public abstract class Game {
 	 * If there are no legal moves then the game is ended.
 	 */
 	public void letEngineMakeMove() {
-		try {
-			addGameMove(engine.findTopMove());
-		} catch (CheckmateException e) {
-			e.printStackTrace();
-		} catch (StalemateException e) {
-			e.printStackTrace();
-		}
+		SearchResult result = engine.search(engineLimits);
+		if (result.hasMove())
+			addGameMove(new Move(result.getMove()));
+		else if (Engine.isMateScore(result.getScore()))
+			endByCheckmate();
+		else
+			endByStalemate();
+	}
+	
+	/**
+	 * Ends the game with the color to play checkmated.
+	 */
+	private void endByCheckmate() {
+		message = "Checkmate: " + (currentPosition.isWhiteToPlay() ? "black" : "white") + " wins";
+		stopGame();
+	}
+	
+	/**
+	 * Ends the game as a draw by stalemate.
+	 */
+	private void endByStalemate() {
+		message = "Draw by stalemate";
+		stopGame();
 	}
 	
 	/**
 	 * Prompts the user for a move and makes that move on the current position.
+	 * If there are no legal moves then the game is ended instead.
 	 */
 	public void letUserMakeMove() {
+		if (currentPosition.findLegalMoves(new int[Position.MAX_MOVES]) == 0) {
+			if (currentPosition.isCheck())
+				endByCheckmate();
+			else
+				endByStalemate();
+			return;
+		}
 		Move userMove = null;
 		
 		while (inGame) {
@@ -125,10 +175,6 @@ public abstract class Game {
 			} catch(RuntimeException | IllegalMoveException e) {
 				scanner.nextLine();
 				System.out.println("This isn't a legal move. Try again.");
-			} catch (CheckmateException e) {
-				e.printStackTrace();
-			} catch (StalemateException e) {
-				e.printStackTrace();
 			}
 		}
 	}
@@ -0,0 +1,54 @@
+package chessengine.system;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transposition table stored in an array on the Java heap. Each long is read
+ * and written with opaque access, which is atomic but adds no memory barriers.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class HeapTranspositionTable extends TranspositionTable {
+
+	/**
+	 * The most buckets that fit in one array: 2^27 buckets of 8 longs is 2^30
+	 * longs, and the next power of 2 would exceed the largest array index.
+	 */
+	private static final long MAX_BUCKETS = 1L << 27;
+
+	/** The entries, 2 longs each: the key XORed with the data, then the data. */
+	private final AtomicLongArray entries;
+
+	/**
+	 * Class constructor specifying the size of the table. The number of buckets
+	 * is rounded down to a power of 2, and is at most <code>MAX_BUCKETS</code>
+	 * buckets of 64 bytes each (8 GB).
+	 *
+	 * @param sizeMb int megabytes to use for the table (at least 1)
+	 */
+	public HeapTranspositionTable(int sizeMb) {
+		this(findBucketCount(sizeMb, MAX_BUCKETS));
+	}
+
+	/**
+	 * Class constructor specifying the number of buckets.
+	 *
+	 * @param bucketCount long number of buckets (a power of 2)
+	 */
+	private HeapTranspositionTable(long bucketCount) {
+		super(bucketCount);
+		this.entries = new AtomicLongArray((int) bucketCount * LONGS_PER_BUCKET);
+	}
+
+	@Override
+	protected long readLong(long index) {
+		return entries.getOpaque((int) index);
+	}
+
+	@Override
+	protected void writeLong(long index, long value) {
+		entries.setOpaque((int) index, value);
+	}
+
+}
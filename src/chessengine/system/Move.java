@@ -3,12 +3,56 @@ package chessengine.system;
 /**
  * Contains the information for a single chess move. Illegal, pseudo legal, and
  * legal moves can be stored as a <code>Move</code> object.
+ * <p>
+ * Move generation and search don't create <code>Move</code> objects. They work
+ * with moves packed into an <code>int</code> by <code>encode</code>, and the
+ * static methods of this class read the fields back out of a packed move. The
+ * bits of a packed move are laid out as follows:
+ * 
+ * <pre>
+ * bits  0-5   start square
+ * bits  6-11  end square
+ * bits 12-15  piece index of the moving piece
+ * bits 16-19  piece index of the captured piece (EMPTY_INDEX if none)
+ * bits 20-23  piece index being promoted to (EMPTY_INDEX if none)
+ * bits 24-26  flags for en passant, castling and a pawn moving 2 squares
+ * </pre>
  * 
  * @author Darcy McCoy
  * @since 1.0
  */
 public class Move {
 
+	/** Packed value that is never a real move (a pawn moving from A8 to A8). */
+	public static final int NO_MOVE = 0;
+
+	/** Flag of a packed move that is a pawn capturing en passant. */
+	public static final int EN_PASSANT_FLAG = 1 << 24;
+
+	/** Flag of a packed move that is a king castling. */
+	public static final int CASTLING_FLAG = 1 << 25;
+
+	/** Flag of a packed move that is a pawn moving 2 squares ahead. */
+	public static final int PAWN_DOUBLE_PUSH_FLAG = 1 << 26;
+
+	/** Mask for a 6 bit square field of a packed move. */
+	private static final int SQR_MASK = 0x3F;
+
+	/** Mask for a 4 bit piece index field of a packed move. */
+	private static final int PIECE_INDEX_MASK = 0xF;
+
+	/** Bit position of the end square field. */
+	private static final int END_SQR_SHIFT = 6;
+
+	/** Bit position of the moving piece field. */
+	private static final int PIECE_SHIFT = 12;
+
+	/** Bit position of the captured piece field. */
+	private static final int CAPTURED_SHIFT = 16;
+
+	/** Bit position of the promoted to piece field. */
+	private static final int PROMOTE_TO_SHIFT = 20;
+
 	/** The character representation of the piece that is making this move. */
 	private char piece;
 
@@ -27,9 +71,6 @@ public class Move {
 	 */
 	private char promoteTo;
 
-	/** The Position that this move is being played from */
-	private Position originalPosition;
-	
 	/**
 	 * Class constructor specifying the piece, start and end squares of this move.
 	 * This can construct every move except for pawns promoting.
@@ -42,7 +83,7 @@ public class Move {
 	 * @param endSqrContents character at the square that the piece ends on
 	 */
 	public Move(char piece, int startSqr, int endSqr, char endSqrContents) {
-		this(piece, startSqr, endSqr, endSqrContents, Chess.EMPTY, null);
+		this(piece, startSqr, endSqr, endSqrContents, Chess.EMPTY);
 	}
 
 	/**
@@ -59,15 +100,24 @@ public class Move {
 	 *                       to. If this move isn't promotion, then this will be
 	 *                       <code>'-'</code>.
 	 * @param endSqrContents character at the square that the piece ends on
-	 * @param originalPosition the Position that this move is played from
 	 */
-	public Move(char piece, int startSqr, int endSqr, char endSqrContents, char promoteTo, Position originalPosition) {
+	public Move(char piece, int startSqr, int endSqr, char endSqrContents, char promoteTo) {
 		this.piece = piece;
 		this.startSqr = startSqr;
 		this.endSqr = endSqr;
 		this.promoteTo = promoteTo;
 		this.endSqrContents = endSqrContents;
-		this.originalPosition = originalPosition;
+	}
+
+	/**
+	 * Class constructor that unpacks a move packed by <code>encode</code>.
+	 * 
+	 * @param move int packed move
+	 */
+	public Move(int move) {
+		this(Chess.toPiece(getPieceIndex(move)), getStartSqr(move), getEndSqr(move),
+				isEnPassant(move) ? Chess.EMPTY : Chess.toPiece(getCapturedIndex(move)),
+				Chess.toPiece(getPromoteToIndex(move)));
 	}
 
 	/**
@@ -76,7 +126,7 @@ public class Move {
 	 * @param otherMove the <code>Move</code> to copy
 	 */
 	public Move(Move otherMove) {
-		this(otherMove.piece, otherMove.startSqr, otherMove.endSqr, otherMove.endSqrContents, otherMove.promoteTo, otherMove.originalPosition);
+		this(otherMove.piece, otherMove.startSqr, otherMove.endSqr, otherMove.endSqrContents, otherMove.promoteTo);
 	}
 
 	/**
@@ -89,6 +139,184 @@ public class Move {
 		return new Move(this);
 	}
 
+	/**
+	 * Returns this move packed into an <code>int</code>.
+	 * 
+	 * @return int packed move
+	 */
+	public int encode() {
+		int capturedIndex = Chess.toPieceIndex(endSqrContents);
+		int promoteToIndex = Chess.EMPTY_INDEX;
+		int flags = 0;
+		if (isEnPassant()) {
+			flags |= EN_PASSANT_FLAG;
+			if (piece == Chess.WH_PAWN)
+				capturedIndex = Chess.BK_PAWN_INDEX;
+			else
+				capturedIndex = Chess.WH_PAWN_INDEX;
+		}
+		if (isCastling())
+			flags |= CASTLING_FLAG;
+		if (((piece == Chess.WH_PAWN) || (piece == Chess.BK_PAWN)) && (Math.abs(endSqr - startSqr) == Chess.SOUTH_2))
+			flags |= PAWN_DOUBLE_PUSH_FLAG;
+		if (isPromotion())
+			promoteToIndex = Chess.toPieceIndex(promoteTo);
+		return encode(startSqr, endSqr, Chess.toPieceIndex(piece), capturedIndex, promoteToIndex, flags);
+	}
+
+	/**
+	 * Returns a move packed into an <code>int</code>.
+	 * 
+	 * @param startSqr       int index of the square that the piece originated from
+	 * @param endSqr         int index of the square that the piece ends on
+	 * @param pieceIndex     int piece index of the piece making the move
+	 * @param capturedIndex  int piece index of the captured piece;
+	 *                       <code>EMPTY_INDEX</code> if nothing is captured
+	 * @param promoteToIndex int piece index of the piece being promoted to;
+	 *                       <code>EMPTY_INDEX</code> if this isn't promotion
+	 * @param flags          int flags of the move
+	 * @return int packed move
+	 */
+	public static int encode(int startSqr, int endSqr, int pieceIndex, int capturedIndex, int promoteToIndex,
+			int flags) {
+		return startSqr | (endSqr << END_SQR_SHIFT) | (pieceIndex << PIECE_SHIFT) | (capturedIndex << CAPTURED_SHIFT)
+				| (promoteToIndex << PROMOTE_TO_SHIFT) | flags;
+	}
+
+	/**
+	 * Returns the square that the piece of a packed move originated from.
+	 * 
+	 * @param move int packed move
+	 * @return int index of the start square
+	 */
+	public static int getStartSqr(int move) {
+		return move & SQR_MASK;
+	}
+
+	/**
+	 * Returns the square that the piece of a packed move ends on.
+	 * 
+	 * @param move int packed move
+	 * @return int index of the end square
+	 */
+	public static int getEndSqr(int move) {
+		return (move >>> END_SQR_SHIFT) & SQR_MASK;
+	}
+
+	/**
+	 * Returns the piece index of the piece making a packed move.
+	 * 
+	 * @param move int packed move
+	 * @return int piece index of the moving piece
+	 */
+	public static int getPieceIndex(int move) {
+		return (move >>> PIECE_SHIFT) & PIECE_INDEX_MASK;
+	}
+
+	/**
+	 * Returns the piece index of the piece captured by a packed move. For en
+	 * passant this is the captured pawn even though it isn't on the end square.
+	 * 
+	 * @param move int packed move
+	 * @return int piece index of the captured piece; <code>EMPTY_INDEX</code> if
+	 *         nothing is captured
+	 */
+	public static int getCapturedIndex(int move) {
+		return (move >>> CAPTURED_SHIFT) & PIECE_INDEX_MASK;
+	}
+
+	/**
+	 * Returns the piece index of the piece that a packed move promotes to.
+	 * 
+	 * @param move int packed move
+	 * @return int piece index of the promoted to piece; <code>EMPTY_INDEX</code>
+	 *         if this isn't promotion
+	 */
+	public static int getPromoteToIndex(int move) {
+		return (move >>> PROMOTE_TO_SHIFT) & PIECE_INDEX_MASK;
+	}
+
+	/**
+	 * Returns true if a packed move captures a piece.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if this move is capturing an opposing piece;
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isCapture(int move) {
+		return getCapturedIndex(move) != Chess.EMPTY_INDEX;
+	}
+
+	/**
+	 * Returns true if a packed move is promotion.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if this move is a pawn promoting;
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isPromotion(int move) {
+		return getPromoteToIndex(move) != Chess.EMPTY_INDEX;
+	}
+
+	/**
+	 * Returns true if a packed move is a pawn capturing en passant.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if this move is en passant; <code>false</code>
+	 *         otherwise.
+	 */
+	public static boolean isEnPassant(int move) {
+		return (move & EN_PASSANT_FLAG) != 0;
+	}
+
+	/**
+	 * Returns true if a packed move is castling.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if this move is a king castling;
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isCastling(int move) {
+		return (move & CASTLING_FLAG) != 0;
+	}
+
+	/**
+	 * Returns true if a packed move is a pawn moving 2 squares ahead.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if this move is a pawn moving 2 squares;
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isPawnDoublePush(int move) {
+		return (move & PAWN_DOUBLE_PUSH_FLAG) != 0;
+	}
+
+	/**
+	 * Returns a string representation of a packed move in the same format as
+	 * <code>toString()</code>.
+	 * 
+	 * @param move int packed move
+	 * @return a string representation of this move
+	 */
+	public static String toString(int move) {
+		return new Move(move).toString();
+	}
+
+	/**
+	 * Returns a packed move in coordinate notation: the start and end square
+	 * names, followed by the lowercase piece for a promotion (such as
+	 * <code>"e7e8q"</code>).
+	 * 
+	 * @param move int packed move
+	 * @return String coordinate notation of this move
+	 */
+	public static String toCoordinateString(int move) {
+		String coordinates = Board.toSqrName(getStartSqr(move)) + Board.toSqrName(getEndSqr(move));
+		if (isPromotion(move))
+			coordinates += Character.toLowerCase(Chess.toPiece(getPromoteToIndex(move)));
+		return coordinates;
+	}
+
 	/**
 	 * Returns true if this move captures a piece.
 	 * 
@@ -184,7 +412,7 @@ public class Move {
 			return false;
 		Move other = (Move) obj;
 		return (piece == other.piece) && (endSqr == other.endSqr) && (promoteTo == other.promoteTo)
-				&& (startSqr == other.startSqr) && (endSqrContents == other.endSqrContents) && (originalPosition.equals(other.originalPosition));
+				&& (startSqr == other.startSqr) && (endSqrContents == other.endSqrContents);
 	}
 
 	/**
@@ -229,6 +457,13 @@ public class Move {
 		this.endSqr = endSqr;
 	}
 
+	/**
+	 * @return the endSqrContents
+	 */
+	public char getEndSqrContents() {
+		return endSqrContents;
+	}
+
 	/**
 	 * @return the promoteTo
 	 */
@@ -243,18 +478,4 @@ public class Move {
 		this.promoteTo = promoteTo;
 	}
 
-	/**
-	 * @return the originalPosition
-	 */
-	public Position getOriginalPosition() {
-		return originalPosition;
-	}
-
-	/**
-	 * @param originalPosition the originalPosition to set
-	 */
-	public void setOriginalPosition(Position originalPosition) {
-		this.originalPosition = originalPosition;
-	}
-
 }
@@ -0,0 +1,141 @@
+package chessengine.system;
+
+/**
+ * What a search has learned about which quiet moves cause beta cutoffs, used
+ * to order the quiet moves of later positions.
+ * <p>
+ * Killer moves are the last 2 quiet moves that caused a cutoff at each ply;
+ * sibling positions at the same ply often have the same refutation. The
+ * butterfly history table scores every start and end square pair of each
+ * color by how often, and how deep, a quiet move between them caused a cutoff
+ * anywhere in the search.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+class MoveHistory {
+
+	/** The number of killer moves kept for each ply. */
+	static final int KILLER_COUNT = 2;
+
+	/** The highest a history score can grow before every score is halved. */
+	static final int MAX_HISTORY_SCORE = 1 << 20;
+
+	/** Killer moves of each ply, most recent first. */
+	private final int[][] killers;
+
+	/** History scores indexed by color, then start square times 64 plus end square. */
+	private final int[][] historyScores;
+
+	/**
+	 * Class constructor for empty killers and history.
+	 */
+	MoveHistory() {
+		this.killers = new int[Engine.MAX_PLY][KILLER_COUNT];
+		this.historyScores = new int[2][Board.SQR_COUNT * Board.SQR_COUNT];
+	}
+
+	/**
+	 * Prepares for a new search. The killers are cleared, since the plies no
+	 * longer line up with the last search, and the history scores are halved so
+	 * they keep what was learned but adapt to the new position.
+	 */
+	void newSearch() {
+		for (int[] plyKillers : killers) {
+			for (int i = 0; i < KILLER_COUNT; i++) {
+				plyKillers[i] = Move.NO_MOVE;
+			}
+		}
+		ageHistory();
+	}
+
+	/**
+	 * Replaces these killers and history with a copy of another's, so a search
+	 * of a split move orders its moves as the worker it was split from would.
+	 *
+	 * @param other <code>MoveHistory</code> to copy
+	 */
+	void copyFrom(MoveHistory other) {
+		for (int i = 0; i < killers.length; i++) {
+			System.arraycopy(other.killers[i], 0, killers[i], 0, KILLER_COUNT);
+		}
+		for (int i = 0; i < historyScores.length; i++) {
+			System.arraycopy(other.historyScores[i], 0, historyScores[i], 0, historyScores[i].length);
+		}
+	}
+
+	/**
+	 * Returns a killer move of the ply.
+	 *
+	 * @param ply   int number of plies from the root of the search
+	 * @param index int 0 for the most recent killer, 1 for the one before it
+	 * @return int packed move; <code>Move.NO_MOVE</code> if there is none
+	 */
+	int getKiller(int ply, int index) {
+		return killers[ply][index];
+	}
+
+	/**
+	 * Returns the history score of a quiet move.
+	 *
+	 * @param move int packed move
+	 * @return int history score (at least 0)
+	 */
+	int getHistoryScore(int move) {
+		return historyScores[findColorIndex(move)][findButterflyIndex(move)];
+	}
+
+	/**
+	 * Records that a quiet move caused a beta cutoff. The move becomes the most
+	 * recent killer of the ply and its history score rises by the square of the
+	 * depth, so cutoffs near the root count for more than those near the leaves.
+	 *
+	 * @param move  int packed quiet move
+	 * @param ply   int number of plies from the root of the search
+	 * @param depth int number of plies that were left to search
+	 */
+	void recordCutoff(int move, int ply, int depth) {
+		int[] plyKillers = killers[ply];
+		if (plyKillers[0] != move) {
+			plyKillers[1] = plyKillers[0];
+			plyKillers[0] = move;
+		}
+		int[] colorScores = historyScores[findColorIndex(move)];
+		int butterflyIndex = findButterflyIndex(move);
+		colorScores[butterflyIndex] += depth * depth;
+		if (colorScores[butterflyIndex] > MAX_HISTORY_SCORE)
+			ageHistory();
+	}
+
+	/**
+	 * Halves every history score.
+	 */
+	private void ageHistory() {
+		for (int[] colorScores : historyScores) {
+			for (int i = 0; i < colorScores.length; i++) {
+				colorScores[i] >>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the color of the moving piece in the history table.
+	 *
+	 * @param move int packed move
+	 * @return int 0 for white; 1 for black
+	 */
+	private static int findColorIndex(int move) {
+		return (Move.getPieceIndex(move) < Chess.BK_PIECE_OFFSET) ? 0 : 1;
+	}
+
+	/**
+	 * Returns the index of the move's start and end squares in the history table.
+	 *
+	 * @param move int packed move
+	 * @return int start square times 64 plus end square
+	 */
+	private static int findButterflyIndex(int move) {
+		return (Move.getStartSqr(move) * Board.SQR_COUNT) + Move.getEndSqr(move);
+	}
+
+}
@@ -0,0 +1,270 @@
+package chessengine.system;
+
+/**
+ * Hands out the moves of a position one at a time in the order the search
+ * should try them, since alpha-beta cuts off far more of the tree when the
+ * best move comes first. The order is:
+ * <ol>
+ * <li>the move stored in the transposition table for the position</li>
+ * <li>captures and promotions that don't lose material, most valuable victim
+ * first and then least valuable attacker first (MVV-LVA)</li>
+ * <li>the killer moves of the ply</li>
+ * <li>the other quiet moves, by history score</li>
+ * <li>captures that lose material</li>
+ * </ol>
+ * The moves are generated in stages, and a stage is only generated once the
+ * moves before it have failed to cut off the search. The table move and the
+ * killers are tested with <code>Position.isLegalMove(int)</code> and searched
+ * before any moves are generated, the captures are generated next, and the
+ * quiet moves, usually most of the moves, are generated last. Within a stage
+ * each move is found by a selection sort step over the moves that are left,
+ * so a position that is cut off after a few moves doesn't pay to sort the
+ * rest.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+class MovePicker {
+
+	/** Stage that hands out the move from the transposition table. */
+	private static final int HASH_MOVE_STAGE = 0;
+
+	/** Stage that generates the captures and promotions. */
+	private static final int GENERATE_CAPTURES_STAGE = 1;
+
+	/** Stage that hands out the captures and promotions that don't lose material. */
+	private static final int GOOD_CAPTURES_STAGE = 2;
+
+	/** Stage that hands out the first killer move. */
+	private static final int FIRST_KILLER_STAGE = 3;
+
+	/** Stage that hands out the second killer move. */
+	private static final int SECOND_KILLER_STAGE = 4;
+
+	/** Stage that generates the quiet moves. */
+	private static final int GENERATE_QUIETS_STAGE = 5;
+
+	/** Stage that hands out the quiet moves. */
+	private static final int QUIETS_STAGE = 6;
+
+	/** Stage that hands out the captures that lose material. */
+	private static final int BAD_CAPTURES_STAGE = 7;
+
+	/** Stage that generates the captures and queen promotions for quiescence search. */
+	private static final int GENERATE_QUIESCENCE_STAGE = 8;
+
+	/** Stage that hands out the captures and queen promotions for quiescence search. */
+	private static final int QUIESCENCE_STAGE = 9;
+
+	/** Stage after every move has been handed out. */
+	private static final int DONE_STAGE = 10;
+
+	/** Buffer the captures are generated into; the front is reused for the losing captures. */
+	private final int[] moves;
+
+	/** Buffer the quiet moves are generated into. */
+	private final int[] quietMoves;
+
+	/** Ordering score of each move in the buffer of the current stage. */
+	private final int[] scores;
+
+	/** The stage the picker is in. */
+	private int stage;
+
+	/** The number of moves in the buffer of the current stage. */
+	private int moveCount;
+
+	/** Index of the next move of the current stage's buffer to hand out. */
+	private int nextIndex;
+
+	/** The number of losing captures set aside at the front of the capture buffer. */
+	private int badCaptureCount;
+
+	/** The move from the transposition table; <code>Move.NO_MOVE</code> if there is none. */
+	private int hashMove;
+
+	/** The first killer move, once it has been handed out. */
+	private int firstKiller;
+
+	/** The second killer move, once it has been handed out. */
+	private int secondKiller;
+
+	/** Position whose moves are handed out. */
+	private Position position;
+
+	/** Killers and history used to order quiet moves. */
+	private MoveHistory history;
+
+	/** Number of plies from the root of the search, used to look up killers. */
+	private int ply;
+
+	/**
+	 * Class constructor specifying the buffer the captures are generated into.
+	 *
+	 * @param moves int buffer with room for <code>Position.MAX_MOVES</code> moves
+	 */
+	MovePicker(int[] moves) {
+		this.moves = moves;
+		this.quietMoves = new int[moves.length];
+		this.scores = new int[moves.length];
+	}
+
+	/**
+	 * Starts handing out every legal move of the position in full search order.
+	 *
+	 * @param position <code>Position</code> to hand out moves for
+	 * @param history  <code>MoveHistory</code> used to order quiet moves
+	 * @param hashMove int packed move from the transposition table;
+	 *                 <code>Move.NO_MOVE</code> if there is none
+	 * @param ply      int number of plies from the root of the search
+	 */
+	void startMainSearch(Position position, MoveHistory history, int hashMove, int ply) {
+		this.position = position;
+		this.history = history;
+		this.ply = ply;
+		this.hashMove = position.isLegalMove(hashMove) ? hashMove : Move.NO_MOVE;
+		this.firstKiller = Move.NO_MOVE;
+		this.secondKiller = Move.NO_MOVE;
+		this.badCaptureCount = 0;
+		this.stage = HASH_MOVE_STAGE;
+	}
+
+	/**
+	 * Starts handing out the legal captures and queen promotions of the position
+	 * by MVV-LVA, for quiescence search.
+	 *
+	 * @param position <code>Position</code> to hand out moves for
+	 */
+	void startCaptures(Position position) {
+		this.position = position;
+		this.hashMove = Move.NO_MOVE;
+		this.stage = GENERATE_QUIESCENCE_STAGE;
+	}
+
+	/**
+	 * Returns the next move to search.
+	 *
+	 * @return int packed move; <code>Move.NO_MOVE</code> once every move has
+	 *         been handed out
+	 */
+	@SuppressWarnings("fallthrough")
+	int nextMove() {
+		switch (stage) {
+		case HASH_MOVE_STAGE:
+			stage = GENERATE_CAPTURES_STAGE;
+			if (hashMove != Move.NO_MOVE)
+				return hashMove;
+			// fall through
+		case GENERATE_CAPTURES_STAGE:
+			startStage(position.findLegalCapturesAndPromotions(moves), moves);
+			stage = GOOD_CAPTURES_STAGE;
+			// fall through
+		case GOOD_CAPTURES_STAGE:
+			while (nextIndex < moveCount) {
+				int move = pickTopMove(moves);
+				if (move == hashMove)
+					continue;
+				if (position.seeGE(move, 0))
+					return move;
+				moves[badCaptureCount++] = move;
+			}
+			stage = FIRST_KILLER_STAGE;
+			// fall through
+		case FIRST_KILLER_STAGE:
+			stage = SECOND_KILLER_STAGE;
+			int killer = history.getKiller(ply, 0);
+			if ((killer != hashMove) && position.isLegalMove(killer)) {
+				firstKiller = killer;
+				return killer;
+			}
+			// fall through
+		case SECOND_KILLER_STAGE:
+			stage = GENERATE_QUIETS_STAGE;
+			killer = history.getKiller(ply, 1);
+			if ((killer != hashMove) && position.isLegalMove(killer)) {
+				secondKiller = killer;
+				return killer;
+			}
+			// fall through
+		case GENERATE_QUIETS_STAGE:
+			startStage(position.findLegalQuietMoves(quietMoves), quietMoves);
+			stage = QUIETS_STAGE;
+			// fall through
+		case QUIETS_STAGE:
+			while (nextIndex < moveCount) {
+				int move = pickTopMove(quietMoves);
+				if ((move != hashMove) && (move != firstKiller) && (move != secondKiller))
+					return move;
+			}
+			stage = BAD_CAPTURES_STAGE;
+			nextIndex = 0;
+			// fall through
+		case BAD_CAPTURES_STAGE:
+			if (nextIndex < badCaptureCount)
+				return moves[nextIndex++];
+			stage = DONE_STAGE;
+			return Move.NO_MOVE;
+
+		case GENERATE_QUIESCENCE_STAGE:
+			startStage(position.findLegalCaptures(moves, true), moves);
+			stage = QUIESCENCE_STAGE;
+			// fall through
+		case QUIESCENCE_STAGE:
+			if (nextIndex < moveCount)
+				return pickTopMove(moves);
+			stage = DONE_STAGE;
+			return Move.NO_MOVE;
+
+		default:
+			return Move.NO_MOVE;
+		}
+	}
+
+	/**
+	 * Scores the newly generated moves of a stage.
+	 *
+	 * @param moveCount  int number of moves generated
+	 * @param stageMoves int buffer the moves were generated into
+	 */
+	private void startStage(int moveCount, int[] stageMoves) {
+		this.moveCount = moveCount;
+		this.nextIndex = 0;
+		boolean quiet = stageMoves == quietMoves;
+		for (int i = 0; i < moveCount; i++) {
+			scores[i] = quiet ? history.getHistoryScore(stageMoves[i]) : findMvvLvaScore(stageMoves[i]);
+		}
+	}
+
+	/**
+	 * Returns the highest scoring move left in the stage's buffer, swapping it to
+	 * the next index so it isn't picked again.
+	 *
+	 * @param stageMoves int buffer of the current stage's moves
+	 * @return int packed move
+	 */
+	private int pickTopMove(int[] stageMoves) {
+		int topIndex = nextIndex;
+		for (int i = nextIndex + 1; i < moveCount; i++) {
+			if (scores[i] > scores[topIndex])
+				topIndex = i;
+		}
+		int move = stageMoves[topIndex];
+		stageMoves[topIndex] = stageMoves[nextIndex];
+		scores[topIndex] = scores[nextIndex];
+		stageMoves[nextIndex++] = move;
+		return move;
+	}
+
+	/**
+	 * Returns the MVV-LVA score of a capture or promotion: the material it gains,
+	 * with ties broken in favor of the least valuable moving piece.
+	 *
+	 * @param move int packed capture or promotion
+	 * @return int MVV-LVA score
+	 */
+	private static int findMvvLvaScore(int move) {
+		int pieceType = Move.getPieceIndex(move) % Chess.BK_PIECE_OFFSET;
+		return (Position.findMaterialGain(move) * Chess.BK_PIECE_OFFSET) + (Chess.BK_PIECE_OFFSET - 1 - pieceType);
+	}
+
+}
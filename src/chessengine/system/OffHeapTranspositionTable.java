@@ -0,0 +1,81 @@
+package chessengine.system;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Transposition table stored in native memory outside the Java heap. The
+ * garbage collector never scans or moves the entries, so a table of several
+ * gigabytes doesn't lengthen collection pauses or need a larger heap.
+ * <p>
+ * The memory is held in direct <code>ByteBuffer</code>s of at most 1 GB each,
+ * since one buffer can't be larger than 2 GB, and each long is read and written
+ * with opaque access through a <code>VarHandle</code>, which is atomic but adds
+ * no memory barriers. The memory is freed when the table is garbage collected.
+ * The JVM limits the total size of direct buffers, so large tables may need
+ * <code>-XX:MaxDirectMemorySize</code> to be raised.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class OffHeapTranspositionTable extends TranspositionTable {
+
+	/** Accesses the longs of a byte buffer in the machine's native byte order. */
+	private static final VarHandle LONG_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+
+	/** Number of bits of a long index that select the long within its chunk. */
+	private static final int CHUNK_INDEX_BITS = 27;
+
+	/** Mask of a long index for the long within its chunk. */
+	private static final long CHUNK_INDEX_MASK = (1L << CHUNK_INDEX_BITS) - 1;
+
+	/** The number of bytes in a long. */
+	private static final int LONG_SHIFT = 3;
+
+	/** The most buckets the table can hold (1 TB worth). */
+	private static final long MAX_BUCKETS = 1L << 34;
+
+	/** The native memory of the table, split into chunks of 2^27 longs (1 GB). */
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * Class constructor specifying the size of the table. The number of buckets
+	 * is rounded down to a power of 2.
+	 *
+	 * @param sizeMb int megabytes to use for the table (at least 1)
+	 */
+	public OffHeapTranspositionTable(int sizeMb) {
+		this(findBucketCount(sizeMb, MAX_BUCKETS));
+	}
+
+	/**
+	 * Class constructor specifying the number of buckets.
+	 *
+	 * @param bucketCount long number of buckets (a power of 2)
+	 */
+	private OffHeapTranspositionTable(long bucketCount) {
+		super(bucketCount);
+		long longCount = bucketCount * LONGS_PER_BUCKET;
+		long chunkLongCount = Math.min(longCount, 1L << CHUNK_INDEX_BITS);
+		this.chunks = new ByteBuffer[(int) (longCount / chunkLongCount)];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect((int) (chunkLongCount << LONG_SHIFT)).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	@Override
+	protected long readLong(long index) {
+		ByteBuffer chunk = chunks[(int) (index >>> CHUNK_INDEX_BITS)];
+		return (long) LONG_HANDLE.getOpaque(chunk, (int) ((index & CHUNK_INDEX_MASK) << LONG_SHIFT));
+	}
+
+	@Override
+	protected void writeLong(long index, long value) {
+		ByteBuffer chunk = chunks[(int) (index >>> CHUNK_INDEX_BITS)];
+		LONG_HANDLE.setOpaque(chunk, (int) ((index & CHUNK_INDEX_MASK) << LONG_SHIFT), value);
+	}
+
+}
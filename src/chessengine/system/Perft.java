@@ -0,0 +1,360 @@
+package chessengine.system;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the leaf nodes of the legal move tree of a position to a fixed depth
+ * (performance test, or perft). The counts of well known positions are
+ * published, so perft checks that move generation and making and unmaking moves
+ * are correct, and timing it measures how fast they are.
+ * <p>
+ * At depth 1 the legal moves are counted without being made (bulk counting).
+ * Subtree counts can optionally be cached by position key and depth, so
+ * positions reached by transposing moves are only counted once.
+ * <p>
+ * With more than 1 thread, the subtree under each root move (and optionally
+ * under each reply) is counted as a separate task in a
+ * <code>ForkJoinPool</code>. Each task counts on its own copy of the position,
+ * and all the tasks share the cache without locking: an entry stores its key
+ * XORed with its count, so an entry torn by 2 threads writing at once doesn't
+ * match the key it is probed with and is treated as a miss.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class Perft {
+
+	/** The deepest perft that move buffers are kept for. */
+	private static final int MAX_DEPTH = 64;
+
+	/** Bytes used by each cache entry (a key and a packed count). */
+	private static final int BYTES_PER_ENTRY = 16;
+
+	/** The most cache entries that fit in one array of 2 longs per entry. */
+	private static final long MAX_CACHE_ENTRIES = 1L << 29;
+
+	/** Number of low bits of a packed cache count that hold the depth. */
+	private static final int DEPTH_BITS = 8;
+
+	/** Mask for the depth of a packed cache count. */
+	private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+	/** Value returned by <code>probeCache</code> when the count isn't cached. */
+	private static final long NOT_CACHED = -1;
+
+	/** <code>Position</code> whose move tree is counted. */
+	private final Position position;
+
+	/** One reusable move buffer for each remaining depth so counting doesn't allocate. */
+	private final int[][] moveBuffers;
+
+	/**
+	 * Cached subtree counts, 2 longs per entry: the position key XORed with the
+	 * packed count, then the packed count (the node count shifted left by
+	 * <code>DEPTH_BITS</code> with the depth in the low bits). <code>null</code>
+	 * if counts aren't cached.
+	 */
+	private final AtomicLongArray cache;
+
+	/** Mask that maps a position key to a cache entry index. */
+	private final int cacheIndexMask;
+
+	/** The number of threads that count subtrees. */
+	private final int threadCount;
+
+	/** Whether each reply to a root move is counted as its own task when counting in parallel. */
+	private final boolean splitSecondPly;
+
+	/**
+	 * Class constructor for a single threaded perft without a cache.
+	 *
+	 * @param position <code>Position</code> whose move tree is counted
+	 */
+	public Perft(Position position) {
+		this(position, 0);
+	}
+
+	/**
+	 * Class constructor for a single threaded perft specifying the size of the
+	 * cache of subtree counts.
+	 *
+	 * @param position    <code>Position</code> whose move tree is counted
+	 * @param cacheSizeMb int megabytes to use for the cache; 0 for no cache
+	 */
+	public Perft(Position position, int cacheSizeMb) {
+		this(position, cacheSizeMb, 1, false);
+	}
+
+	/**
+	 * Class constructor specifying the size of the cache of subtree counts and the
+	 * number of threads to count with. The number of cache entries is rounded
+	 * down to a power of 2.
+	 *
+	 * @param position       <code>Position</code> whose move tree is counted
+	 * @param cacheSizeMb    int megabytes to use for the cache; 0 for no cache
+	 * @param threadCount    int number of threads to count with; 0 for one per
+	 *                       available processor
+	 * @param splitSecondPly boolean whether to count each reply to a root move as
+	 *                       its own task, which balances the threads better when
+	 *                       there are few root moves
+	 */
+	public Perft(Position position, int cacheSizeMb, int threadCount, boolean splitSecondPly) {
+		this.position = position;
+		this.moveBuffers = new int[MAX_DEPTH + 1][Position.MAX_MOVES];
+		long entryCount = ((long) cacheSizeMb << 20) / BYTES_PER_ENTRY;
+		if (entryCount > 0) {
+			entryCount = Math.min(Long.highestOneBit(entryCount), MAX_CACHE_ENTRIES);
+			this.cache = new AtomicLongArray((int) entryCount * 2);
+			this.cacheIndexMask = (int) entryCount - 1;
+		} else {
+			this.cache = null;
+			this.cacheIndexMask = 0;
+		}
+		if (threadCount < 1)
+			threadCount = Runtime.getRuntime().availableProcessors();
+		this.threadCount = threadCount;
+		this.splitSecondPly = splitSecondPly;
+	}
+
+	/**
+	 * Class constructor for a single threaded perft counting a subtree for a
+	 * parallel perft. It shares the cache of the perft that split off the subtree.
+	 *
+	 * @param position <code>Position</code> copy whose move tree is counted
+	 * @param depth    int deepest depth that will be counted
+	 * @param parent   <code>Perft</code> whose cache is shared
+	 */
+	private Perft(Position position, int depth, Perft parent) {
+		this.position = position;
+		this.moveBuffers = new int[depth + 1][Position.MAX_MOVES];
+		this.cache = parent.cache;
+		this.cacheIndexMask = parent.cacheIndexMask;
+		this.threadCount = 1;
+		this.splitSecondPly = false;
+	}
+
+	/**
+	 * Returns the number of leaf nodes of the legal move tree at this depth.
+	 *
+	 * @param depth int number of plies to count to
+	 * @return long number of leaf nodes
+	 * @throws IllegalArgumentException if the depth is negative or deeper than
+	 *                                  <code>MAX_DEPTH</code>
+	 */
+	public long perft(int depth) {
+		if ((depth < 0) || (depth > MAX_DEPTH))
+			throw new IllegalArgumentException("Perft depth must be from 0 to " + MAX_DEPTH + ": " + depth);
+		if ((threadCount == 1) || (depth < 2))
+			return countLeafNodes(depth);
+		int[] moves = moveBuffers[depth];
+		int moveCount = position.findLegalMoves(moves);
+		long nodes = 0;
+		for (long moveNodes : countRootMoves(depth, moves, moveCount)) {
+			nodes += moveNodes;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of leaf nodes of the legal move tree at this depth, and
+	 * prints the number of leaf nodes under each legal move of the position
+	 * (divide). Comparing divide output against another move generator shows
+	 * which move has a wrong count.
+	 *
+	 * @param depth int number of plies to count to (at least 1)
+	 * @return long number of leaf nodes
+	 * @throws IllegalArgumentException if the depth is less than 1 or deeper than
+	 *                                  <code>MAX_DEPTH</code>
+	 */
+	public long divide(int depth) {
+		if ((depth < 1) || (depth > MAX_DEPTH))
+			throw new IllegalArgumentException("Divide depth must be from 1 to " + MAX_DEPTH + ": " + depth);
+		int[] moves = moveBuffers[depth];
+		int moveCount = position.findLegalMoves(moves);
+		long[] moveNodes = countRootMoves(depth, moves, moveCount);
+		long nodes = 0;
+		for (int i = 0; i < moveCount; i++) {
+			System.out.println(Move.toCoordinateString(moves[i]) + ": " + moveNodes[i]);
+			nodes += moveNodes[i];
+		}
+		System.out.println();
+		return nodes;
+	}
+
+	/**
+	 * Counts the leaf nodes at this depth and prints the count, the time taken
+	 * and the nodes per second.
+	 *
+	 * @param depth  int number of plies to count to
+	 * @param divide boolean whether to print the count under each legal move first
+	 * @return long number of leaf nodes
+	 */
+	public long report(int depth, boolean divide) {
+		long startTime = System.nanoTime();
+		long nodes = divide ? divide(depth) : perft(depth);
+		long elapsedNanos = Math.max(System.nanoTime() - startTime, 1);
+		long nodesPerSecond = (long) (nodes * 1e9 / elapsedNanos);
+		System.out.println("Depth " + depth + ": " + nodes + " nodes in " + (elapsedNanos / 1000000) + " ms ("
+				+ nodesPerSecond + " nps)");
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of leaf nodes under each of the root moves, counted in
+	 * parallel if there is more than 1 thread.
+	 *
+	 * @param depth     int number of plies to count to from the root
+	 * @param moves     int buffer of the packed legal root moves
+	 * @param moveCount int number of legal root moves
+	 * @return long array of the number of leaf nodes under each root move
+	 */
+	private long[] countRootMoves(int depth, int[] moves, int moveCount) {
+		long[] moveNodes = new long[moveCount];
+		if (threadCount == 1) {
+			for (int i = 0; i < moveCount; i++) {
+				position.makeMove(moves[i]);
+				moveNodes[i] = countLeafNodes(depth - 1);
+				position.unmakeMove(moves[i]);
+			}
+			return moveNodes;
+		}
+
+		SubtreeTask[] tasks = new SubtreeTask[moveCount];
+		for (int i = 0; i < moveCount; i++) {
+			Position subtreePosition = position.clone();
+			subtreePosition.makeMove(moves[i]);
+			tasks[i] = new SubtreeTask(subtreePosition, depth - 1, splitSecondPly);
+		}
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try {
+			for (SubtreeTask task : tasks) {
+				pool.execute(task);
+			}
+			for (int i = 0; i < moveCount; i++) {
+				moveNodes[i] = tasks[i].join();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return moveNodes;
+	}
+
+	/**
+	 * Returns the number of leaf nodes under the current position at this depth.
+	 *
+	 * @param depth int number of plies to count to
+	 * @return long number of leaf nodes
+	 */
+	private long countLeafNodes(int depth) {
+		if (depth == 0)
+			return 1;
+		int[] moves = moveBuffers[depth];
+		if (depth == 1)
+			return position.findLegalMoves(moves);
+
+		long nodes = probeCache(position.getKey(), depth);
+		if (nodes != NOT_CACHED)
+			return nodes;
+
+		int moveCount = position.findLegalMoves(moves);
+		nodes = 0;
+		for (int i = 0; i < moveCount; i++) {
+			position.makeMove(moves[i]);
+			nodes += countLeafNodes(depth - 1);
+			position.unmakeMove(moves[i]);
+		}
+		storeCache(position.getKey(), depth, nodes);
+		return nodes;
+	}
+
+	/**
+	 * Returns the cached number of leaf nodes under a position at this depth.
+	 *
+	 * @param key   long key of the position
+	 * @param depth int number of plies counted to
+	 * @return long cached number of leaf nodes; <code>NOT_CACHED</code> if there
+	 *         is no cache or the count isn't in it
+	 */
+	private long probeCache(long key, int depth) {
+		if (cache == null)
+			return NOT_CACHED;
+		int cacheIndex = ((int) key & cacheIndexMask) * 2;
+		long packedCount = cache.getOpaque(cacheIndex + 1);
+		if (((cache.getOpaque(cacheIndex) ^ packedCount) != key) || ((packedCount & DEPTH_MASK) != depth))
+			return NOT_CACHED;
+		return packedCount >>> DEPTH_BITS;
+	}
+
+	/**
+	 * Stores the number of leaf nodes under a position at this depth in the cache,
+	 * replacing whatever entry was there.
+	 *
+	 * @param key   long key of the position
+	 * @param depth int number of plies counted to
+	 * @param nodes long number of leaf nodes
+	 */
+	private void storeCache(long key, int depth, long nodes) {
+		if (cache == null)
+			return;
+		int cacheIndex = ((int) key & cacheIndexMask) * 2;
+		long packedCount = (nodes << DEPTH_BITS) | depth;
+		cache.setOpaque(cacheIndex, key ^ packedCount);
+		cache.setOpaque(cacheIndex + 1, packedCount);
+	}
+
+	/**
+	 * Task that counts the leaf nodes under a position on its own copy of the
+	 * position. If it is allowed to split, each of the position's moves is counted
+	 * as its own task instead.
+	 */
+	private class SubtreeTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Copy of the position at the root of this subtree, owned by this task. */
+		private final Position subtreePosition;
+
+		/** Number of plies to count to from the root of this subtree. */
+		private final int depth;
+
+		/** Whether this subtree is split into a task for each of its moves. */
+		private final boolean split;
+
+		/**
+		 * Class constructor specifying the subtree to count.
+		 *
+		 * @param subtreePosition <code>Position</code> copy owned by this task
+		 * @param depth           int number of plies to count to
+		 * @param split           boolean whether to count each move as its own task
+		 */
+		SubtreeTask(Position subtreePosition, int depth, boolean split) {
+			this.subtreePosition = subtreePosition;
+			this.depth = depth;
+			this.split = split;
+		}
+
+		@Override
+		protected Long compute() {
+			if (!split || (depth < 2))
+				return new Perft(subtreePosition, depth, Perft.this).countLeafNodes(depth);
+
+			int[] moves = new int[Position.MAX_MOVES];
+			int moveCount = subtreePosition.findLegalMoves(moves);
+			SubtreeTask[] tasks = new SubtreeTask[moveCount];
+			for (int i = 0; i < moveCount; i++) {
+				Position replyPosition = subtreePosition.clone();
+				replyPosition.makeMove(moves[i]);
+				tasks[i] = new SubtreeTask(replyPosition, depth - 1, false);
+			}
+			invokeAll(tasks);
+			long nodes = 0;
+			for (SubtreeTask task : tasks) {
+				nodes += task.join();
+			}
+			return nodes;
+		}
+	}
+
+}
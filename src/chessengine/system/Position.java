@@ -1,5 +1,6 @@
 package chessengine.system;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -23,6 +24,36 @@ public class Position {
 	/** The en passant capturability of pawns */
 	private EnPassantRights enPassantRights;
 	
+	/** The most moves that can be legal in any chess position, rounded up. Move buffers should be this long. */
+	public static final int MAX_MOVES = 256;
+	
+	/** The number of moves the undo stack has room for before it needs to grow. */
+	private static final int INITIAL_UNDO_CAPACITY = 256;
+	
+	/** The packed castling rights before each move that can be unmade, indexed by ply. */
+	private int[] castlingRightsStack;
+	
+	/** The en passant capturable square before each move that can be unmade, indexed by ply. */
+	private int[] enPassantSqrStack;
+	
+	/** The position key before each move that can be unmade, indexed by ply. */
+	private long[] keyStack;
+	
+	/** The number of moves that have been made and can be unmade. */
+	private int undoCount;
+	
+	/** Zobrist key of the position, kept up to date as moves are made and unmade. */
+	private long key;
+	
+	/** The most captures that can be made in a row on one square, plus the first gain. */
+	private static final int MAX_EXCHANGE_LENGTH = 32;
+	
+	/** Reusable list of the material each side has gained after each capture of a static exchange. */
+	private final int[] exchangeGains = new int[MAX_EXCHANGE_LENGTH];
+	
+	/** Reusable buffer for the moves of one piece to one square (up to 4 promotions). */
+	private final int[] sqrMoves = new int[Chess.WH_PROMOTING_TYPES.length];
+	
 	/**
 	 * Default constructor for the standard starting chess position.
 	 */
@@ -43,6 +74,62 @@ public class Position {
 		this.board = board;
 		this.castlingRights = castlingRights;
 		this.enPassantRights = enPassantRights;
+		this.castlingRightsStack = new int[INITIAL_UNDO_CAPACITY];
+		this.enPassantSqrStack = new int[INITIAL_UNDO_CAPACITY];
+		this.keyStack = new long[INITIAL_UNDO_CAPACITY];
+		this.undoCount = 0;
+		updateKey();
+	}
+
+	/**
+	 * Returns the position described by a FEN (Forsyth-Edwards Notation) string,
+	 * such as <code>"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"</code>.
+	 * The first 4 fields (pieces, color to play, castling and en passant target)
+	 * are read; the move counters are optional and ignored.
+	 *
+	 * @param fen String FEN of the position
+	 * @return <code>Position</code> described by the FEN
+	 * @throws IllegalArgumentException if the FEN can't be read
+	 */
+	public static Position fromFen(String fen) {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4)
+			throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+
+		StringBuilder sqrs = new StringBuilder();
+		for (char c : fields[0].toCharArray()) {
+			if ((c >= '1') && (c <= '8')) {
+				for (int i = 0; i < c - '0'; i++) {
+					sqrs.append(Chess.EMPTY);
+				}
+			} else if (Chess.toPieceIndex(c) != Chess.EMPTY_INDEX) {
+				sqrs.append(c);
+			} else if (c != '/') {
+				throw new IllegalArgumentException("Not a piece in FEN: " + c);
+			}
+		}
+		if (sqrs.length() != Board.SQR_COUNT)
+			throw new IllegalArgumentException("FEN doesn't have 64 squares: " + fields[0]);
+		Board board = new Board(sqrs.toString());
+
+		if (!fields[1].equals("w") && !fields[1].equals("b"))
+			throw new IllegalArgumentException("Not a color to play in FEN: " + fields[1]);
+		boolean whiteToPlay = fields[1].equals("w");
+
+		String castling = fields[2];
+		CastlingRights castlingRights = new CastlingRights(castling.contains("K"), castling.contains("Q"),
+				castling.contains("k"), castling.contains("q"));
+
+		// FEN names the square behind the pawn, but the rights store the pawn's own
+		// square, and only when a pawn is in place to capture it
+		EnPassantRights enPassantRights = new EnPassantRights();
+		if (!fields[3].equals("-")) {
+			int targetSqr = Board.toSqr(fields[3]);
+			int pawnIndex = whiteToPlay ? Chess.WH_PAWN_INDEX : Chess.BK_PAWN_INDEX;
+			if ((Attacks.pawnAttacks(targetSqr, !whiteToPlay) & board.getBitboard(pawnIndex)) != 0)
+				enPassantRights.setCapturableSqr(targetSqr + (whiteToPlay ? Chess.SOUTH_1 : Chess.NORTH_1));
+		}
+		return new Position(whiteToPlay, board, castlingRights, enPassantRights);
 	}
 
 	/**
@@ -64,6 +151,16 @@ public class Position {
 		return new Position(this);
 	}
 
+	/**
+	 * Returns true if white is the color to play.
+	 *
+	 * @return <code>true</code> if white is to play; <code>false</code> if black
+	 *         is to play.
+	 */
+	public boolean isWhiteToPlay() {
+		return whiteToPlay;
+	}
+
 	/**
 	 * Returns all legal moves that the color to move can make.
 	 *
@@ -73,28 +170,140 @@ public class Position {
 	 *                            moves
 	 */
 	public LinkedList<Move> findLegalMoves() throws CheckmateException, StalemateException {
-		LinkedList<Move> pseudoLegalMoves = findPseudoLegalMoves();
+		int[] moves = new int[MAX_MOVES];
+		int legalMoveCount = findLegalMoves(moves);
+		testForNoLegalMoves(legalMoveCount);
 		LinkedList<Move> legalMoves = new LinkedList<>();
-		for (Move move : pseudoLegalMoves) {
-			if (!isSelfCheckMove(move) && !(move.isCastling() && isCheck())) {
-				legalMoves.add(move);
-			}
+		for (int i = 0; i < legalMoveCount; i++) {
+			legalMoves.add(new Move(moves[i]));
 		}
-		testForNoLegalMoves(legalMoves);
 		return legalMoves;
 	}
 
+	/**
+	 * Fills the buffer with all legal moves that the color to move can make,
+	 * packed as ints. The buffer should be at least <code>MAX_MOVES</code> long.
+	 *
+	 * @param moves int buffer that the packed moves are written to
+	 * @return int number of legal moves written to the buffer
+	 */
+	public int findLegalMoves(int[] moves) {
+		return findLegalMoves(moves, ~board.getOccupancy(whiteToPlay), 0);
+	}
+
+	/**
+	 * Fills the buffer with the legal captures that the color to move can make,
+	 * including en passant and pawns capturing onto the last rank. Quiet moves
+	 * aren't generated, other than pawns pushing onto the last rank to promote to a
+	 * queen if they are included.
+	 *
+	 * @param moves                  int buffer that the packed moves are written
+	 *                               to
+	 * @param includeQueenPromotions boolean whether to include pawns pushing to
+	 *                               promote to a queen
+	 * @return int number of legal moves written to the buffer
+	 */
+	public int findLegalCaptures(int[] moves, boolean includeQueenPromotions) {
+		if (!includeQueenPromotions)
+			return findLegalMoves(moves, board.getOccupancy(!whiteToPlay), 0);
+		int moveCount = findLegalCapturesAndPromotions(moves);
+
+		// pushes onto the last rank were added with every type of promotion
+		int queenIndex = whiteToPlay ? Chess.WH_QUEEN_INDEX : Chess.BK_QUEEN_INDEX;
+		int captureCount = 0;
+		for (int i = 0; i < moveCount; i++) {
+			if (Move.isCapture(moves[i]) || (Move.getPromoteToIndex(moves[i]) == queenIndex))
+				moves[captureCount++] = moves[i];
+		}
+		return captureCount;
+	}
+
+	/**
+	 * Fills the buffer with the legal captures and promotions that the color to
+	 * move can make, including en passant and every type of promotion. Together
+	 * with <code>findLegalQuietMoves</code> this generates every legal move once.
+	 *
+	 * @param moves int buffer that the packed moves are written to
+	 * @return int number of legal moves written to the buffer
+	 */
+	public int findLegalCapturesAndPromotions(int[] moves) {
+		long promotionTargets = (whiteToPlay ? Board.RANK_8_SQRS : Board.RANK_1_SQRS) & ~board.getOccupancy();
+		return findLegalMoves(moves, board.getOccupancy(!whiteToPlay), promotionTargets);
+	}
+
+	/**
+	 * Fills the buffer with the legal moves that the color to move can make that
+	 * neither capture nor promote, including castling.
+	 *
+	 * @param moves int buffer that the packed moves are written to
+	 * @return int number of legal moves written to the buffer
+	 */
+	public int findLegalQuietMoves(int[] moves) {
+		int moveCount = findLegalMoves(moves, ~board.getOccupancy(), 0);
+
+		// pushes onto the last rank were added with the other moves to empty squares
+		int quietCount = 0;
+		for (int i = 0; i < moveCount; i++) {
+			if (!Move.isPromotion(moves[i]))
+				moves[quietCount++] = moves[i];
+		}
+		return quietCount;
+	}
+
+	/**
+	 * Fills the buffer with the legal moves that end on one of the target squares.
+	 * The pieces giving check and the pinned pieces are found once, so moves are
+	 * only generated if they are legal: in check, the non king moves must capture
+	 * the checking piece or block its line (in double check only the king can
+	 * move), and a pinned piece can only move along the line through its king and
+	 * the piece pinning it. En passant is the one move that is tested by making
+	 * it, since it can uncover an attack along the rank of both pawns.
+	 *
+	 * @param moves           int buffer that the packed moves are written to
+	 * @param targets         long bitboard of the squares the moves may end on
+	 * @param pawnPushTargets long bitboard of other squares that pawns may move
+	 *                        on to
+	 * @return int number of legal moves written to the buffer
+	 */
+	private int findLegalMoves(int[] moves, long targets, long pawnPushTargets) {
+		int kingSqr = board.findKingSqr(whiteToPlay);
+		long checkers = findAttackers(kingSqr, !whiteToPlay, board.getOccupancy());
+		int moveCount = findNormalKingMoves(kingSqr, targets, moves, 0);
+		if (Long.bitCount(checkers) > 1)
+			return moveCount;
+
+		long checkMask = ~0L;
+		if (checkers != 0)
+			checkMask = checkers | Attacks.between(kingSqr, Long.numberOfTrailingZeros(checkers));
+		else
+			moveCount = findCastlingKingMoves(kingSqr, targets, moves, moveCount);
+
+		long pinned = findPinnedPieces(kingSqr);
+		long pawns = board.getBitboard(whiteToPlay ? Chess.WH_PAWN_INDEX : Chess.BK_PAWN_INDEX);
+		for (long pieces = board.getOccupancy(whiteToPlay) & ~(1L << kingSqr); pieces != 0; pieces &= pieces - 1) {
+			int pieceSqr = Long.numberOfTrailingZeros(pieces);
+			long pieceTargets = targets;
+			if ((pawns & (1L << pieceSqr)) != 0)
+				pieceTargets |= pawnPushTargets;
+			pieceTargets &= checkMask;
+			if ((pinned & (1L << pieceSqr)) != 0)
+				pieceTargets &= Attacks.line(kingSqr, pieceSqr);
+			moveCount = findPieceMoves(board.getSqr(pieceSqr), pieceSqr, pieceTargets, moves, moveCount);
+		}
+		return findEnPassantMoves(targets, moves, moveCount);
+	}
+
 	/**
 	 * Throws the appropriate exception if there are 0 legal moves for the color to
 	 * play.
 	 * 
-	 * @param legalMoves <code>LinkedList</code> of the legal moves in this position
+	 * @param legalMoveCount int number of legal moves in this position
 	 * @throws CheckmateException if the king is checked and there are 0 legal moves
 	 * @throws StalemateException if the king is not checked and there are 0 legal
 	 *                            moves
 	 */
-	public void testForNoLegalMoves(LinkedList<Move> legalMoves) throws CheckmateException, StalemateException {
-		if (legalMoves.isEmpty()) {
+	public void testForNoLegalMoves(int legalMoveCount) throws CheckmateException, StalemateException {
+		if (legalMoveCount == 0) {
 			if (isCheck())
 				throw new CheckmateException();
 			else
@@ -104,30 +313,140 @@ public class Position {
 
 	/**
 	 * Updates isWhiteToPlay and the board so that the move has been played.
-	 * Accounts for castling, en passant and promotion.
 	 *
 	 * @param move the <code>Move</code> to be made
 	 */
 	public void makeMove(Move move) {
+		makeMove(move.encode());
+	}
+
+	/**
+	 * Updates isWhiteToPlay and the board so that the move has been played.
+	 * Accounts for castling, en passant and promotion. The state that can't be
+	 * recovered from the move itself is pushed onto the undo stack so the move
+	 * can later be taken back with <code>unmakeMove</code>.
+	 *
+	 * @param move int packed move to be made
+	 */
+	public void makeMove(int move) {
+		pushUndoState();
 		board.updateRookForCastlingMove(move);
 		board.updateCapturedPawnForEnPassantMove(move);
 		board.updateStartSqrContents(move);
 		board.updateEndSqrContents(move);
 		if (board.isAllowsEnPassant(move)) {
-			enPassantRights.setCapturableSqr(move.getEndSqr());
+			enPassantRights.setCapturableSqr(Move.getEndSqr(move));
 		} else {
 			enPassantRights.removeCapturability();
 		}
 		castlingRights.updateRightsForMove(move);
 		whiteToPlay = !whiteToPlay;
+		updateKey();
+	}
+
+	/**
+	 * Takes back the last move made with <code>makeMove</code>.
+	 *
+	 * @param move the <code>Move</code> that was last made
+	 */
+	public void unmakeMove(Move move) {
+		unmakeMove(move.encode());
+	}
+
+	/**
+	 * Takes back the last move made with <code>makeMove</code>, restoring the
+	 * captured piece, castling rights, en passant rights and color to play.
+	 *
+	 * @param move int packed move that was last made
+	 */
+	public void unmakeMove(int move) {
+		undoCount--;
+		whiteToPlay = !whiteToPlay;
+		castlingRights.setPackedRights(castlingRightsStack[undoCount]);
+		enPassantRights.setCapturableSqr(enPassantSqrStack[undoCount]);
+		key = keyStack[undoCount];
+		board.restoreSqrContents(move);
 	}
 
-	public void undoMove(Move move) {
-		Position beforeMove = move.getOriginalPosition();
-		whiteToPlay = beforeMove.whiteToPlay;
-		board = beforeMove.board;
-		castlingRights = beforeMove.castlingRights;
-		enPassantRights = beforeMove.enPassantRights;
+	/**
+	 * Passes the turn to the other color without moving a piece (a null move),
+	 * which the search uses to test whether a position is good enough that even
+	 * giving the opponent an extra move doesn't help them. En passant rights are
+	 * cleared, since they only last for 1 move. This should only be called when
+	 * the color to play isn't in check. It can later be taken back with
+	 * <code>unmakeNullMove</code>.
+	 */
+	public void makeNullMove() {
+		pushUndoState();
+		enPassantRights.removeCapturability();
+		whiteToPlay = !whiteToPlay;
+		updateKey();
+	}
+
+	/**
+	 * Takes back the null move made last with <code>makeNullMove</code>, restoring
+	 * the en passant rights and color to play.
+	 */
+	public void unmakeNullMove() {
+		undoCount--;
+		whiteToPlay = !whiteToPlay;
+		enPassantRights.setCapturableSqr(enPassantSqrStack[undoCount]);
+		key = keyStack[undoCount];
+	}
+
+	/**
+	 * Returns true if the color to play has a piece other than its king and
+	 * pawns. Without one, zugzwang (where any move makes the position worse) is
+	 * common, so passing the turn is a poor guide to the score.
+	 *
+	 * @return <code>true</code> if the color to play has a knight, bishop, rook or
+	 *         queen; <code>false</code> otherwise.
+	 */
+	public boolean hasNonPawnMaterial() {
+		int colorOffset = whiteToPlay ? 0 : Chess.BK_PIECE_OFFSET;
+		return (board.getBitboard(Chess.WH_KNIGHT_INDEX + colorOffset)
+				| board.getBitboard(Chess.WH_BISHOP_INDEX + colorOffset)
+				| board.getBitboard(Chess.WH_ROOK_INDEX + colorOffset)
+				| board.getBitboard(Chess.WH_QUEEN_INDEX + colorOffset)) != 0;
+	}
+
+	/**
+	 * Saves the state that a move will overwrite onto the undo stack. The captured
+	 * piece is part of the packed move, so only the rights and key need to be saved. The
+	 * stack only grows when a game runs longer than its current capacity, so
+	 * making moves during a search doesn't allocate.
+	 */
+	private void pushUndoState() {
+		if (undoCount == castlingRightsStack.length) {
+			castlingRightsStack = Arrays.copyOf(castlingRightsStack, undoCount * 2);
+			enPassantSqrStack = Arrays.copyOf(enPassantSqrStack, undoCount * 2);
+			keyStack = Arrays.copyOf(keyStack, undoCount * 2);
+		}
+		castlingRightsStack[undoCount] = castlingRights.getPackedRights();
+		enPassantSqrStack[undoCount] = enPassantRights.getCapturableSqr();
+		keyStack[undoCount] = key;
+		undoCount++;
+	}
+
+	/**
+	 * Sets the key from the board's piece key and the keys of the color to play
+	 * and the rights. The board updates its piece key square by square as the
+	 * move is made, so this doesn't need to look at the pieces.
+	 */
+	private void updateKey() {
+		key = board.getPieceKey() ^ Zobrist.sideKey(whiteToPlay)
+				^ Zobrist.castlingKey(castlingRights.getPackedRights())
+				^ Zobrist.enPassantKey(enPassantRights.getCapturableSqr());
+	}
+
+	/**
+	 * Returns the Zobrist key of this position. Positions with the same pieces,
+	 * color to play, castling rights and en passant rights have the same key.
+	 *
+	 * @return long 64 bit key of this position
+	 */
+	public long getKey() {
+		return key;
 	}
 
 	/**
@@ -152,15 +471,10 @@ public class Position {
 	 * @param startSqr index of the square that the move start from
 	 * @param endSqr   index of the square that the move ends on
 	 * @return a <code>Move<code> that the user is making
-	 * @throws CheckmateException   if the king is checked and there are 0 legal
-	 *                              moves
-	 * @throws StalemateException   if the king is not checked and there are 0 legal
-	 *                              moves
 	 * @throws IllegalMoveException if the user is attempting to make an illegal
 	 *                              move
 	 */
-	public Move constructUserMove(int startSqr, int endSqr)
-			throws CheckmateException, StalemateException, IllegalMoveException {
+	public Move constructUserMove(int startSqr, int endSqr) throws IllegalMoveException {
 		if (!Board.isOnTheBoard(startSqr) || !Board.isOnTheBoard(endSqr))
 			throw new IllegalMoveException("This is an illegal move");
 		Move userMove = board.constructNonPromotionMove(startSqr, endSqr);
@@ -174,25 +488,40 @@ public class Position {
 	}
 
 	/**
-	 * Returns a new move in a <code>LinkedList</code>. The <code>LinkedList</code>
-	 * allows this function to return promotion moves as 4 distinct moves (one for each type of promotion).
+	 * Adds a move to the buffer. A pawn reaching the last rank is added as 4
+	 * distinct moves (one for each type of promotion).
 	 * 
-	 * @param startSqr index of the square that the pawn originated from
-	 * @param endSqr index of the square that the pawn ends on
-	 * @return the <code>LinkedList</code> with the new <code>Move</code> inside
-	 */
-	public LinkedList<Move> constructMove(int startSqr, int endSqr) {
-		LinkedList<Move> moveInList = new LinkedList<>();
-		Move newMove = board.constructNonPromotionMove(startSqr, endSqr);
-		if (newMove.isPromotion()) {
-			moveInList.addAll(board.constructPromotionMove(newMove));
-		} else {
-			moveInList.add(newMove);
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @param startSqr  index of the square that the piece originated from
+	 * @param endSqr    index of the square that the piece ends on
+	 * @param flags     int flags of the move
+	 * @return int number of moves in the buffer after adding this move
+	 */
+	private int addMove(int[] moves, int moveCount, int startSqr, int endSqr, int flags) {
+		int pieceIndex = board.getPieceIndex(startSqr);
+		int capturedIndex = board.getPieceIndex(endSqr);
+		if ((flags & Move.EN_PASSANT_FLAG) != 0) {
+			if (whiteToPlay)
+				capturedIndex = Chess.BK_PAWN_INDEX;
+			else
+				capturedIndex = Chess.WH_PAWN_INDEX;
 		}
-		for(Move move : moveInList) {
-			move.setOriginalPosition(this);
+		if (((pieceIndex == Chess.WH_PAWN_INDEX) && Board.isRank8Sqr(endSqr))
+				|| ((pieceIndex == Chess.BK_PAWN_INDEX) && Board.isRank1Sqr(endSqr))) {
+			char[] promoteTypes;
+			if (whiteToPlay)
+				promoteTypes = Chess.WH_PROMOTING_TYPES;
+			else
+				promoteTypes = Chess.BK_PROMOTING_TYPES;
+			for (char promoteType : promoteTypes) {
+				moves[moveCount++] = Move.encode(startSqr, endSqr, pieceIndex, capturedIndex,
+						Chess.toPieceIndex(promoteType), flags);
+			}
+		} else {
+			moves[moveCount++] = Move.encode(startSqr, endSqr, pieceIndex, capturedIndex, Chess.EMPTY_INDEX, flags);
 		}
-		return moveInList;
+		return moveCount;
 	}
 
 	/**
@@ -202,285 +531,507 @@ public class Position {
 	 * @param testMove the move to be tested
 	 * @return <code>true</code> if the move is legal for this position;
 	 *         <code>false</code> otherwise.
-	 * @throws CheckmateException if the king is checked and there are 0 legal moves
-	 * @throws StalemateException if the king is not checked and there are 0 legal
-	 *                            moves
 	 */
-	public boolean isLegalMove(Move testMove) throws CheckmateException, StalemateException {
-		LinkedList<Move> legalMoves = findLegalMoves();
-		for (Move move : legalMoves) {
-			if (move.equals(testMove))
+	public boolean isLegalMove(Move testMove) {
+		int encodedTestMove = testMove.encode();
+		int[] moves = new int[MAX_MOVES];
+		int legalMoveCount = findLegalMoves(moves);
+		for (int i = 0; i < legalMoveCount; i++) {
+			if (moves[i] == encodedTestMove)
 				return true;
 		}
 		return false;
 	}
 
 	/**
-	 * Returns all pseudo legal moves and legal moves that the color to move can
-	 * make. This can include illegal moves (such as self check moves, castling out
-	 * of check).
+	 * Returns true if the move is legal for this position. Unlike
+	 * <code>isLegalMove(Move)</code>, only the moves of the piece on the move's
+	 * start square are generated, so this is fast enough to test a move from the
+	 * transposition table or a killer move before searching it.
+	 *
+	 * @param move int packed move to be tested, which may be any int
+	 * @return <code>true</code> if the move is legal for this position;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isLegalMove(int move) {
+		return isPseudoLegal(move) && !isSelfCheckMove(move);
+	}
+
+	/**
+	 * Returns true if the move is one that the piece on its start square can make,
+	 * ignoring whether it leaves its own king in check. Every packed field of the
+	 * move must match, including the captured piece and the flags. King moves and
+	 * en passant are only true if they are legal, since they are generated that
+	 * way.
 	 *
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves in a
-	 *         position
+	 * @param move int packed move to be tested, which may be any int
+	 * @return <code>true</code> if the move can be made in this position, other
+	 *         than leaving the king in check; <code>false</code> otherwise.
 	 */
-	public LinkedList<Move> findPseudoLegalMoves() {
-		LinkedList<Move> pseudoLegalMoves = new LinkedList<>();
+	public boolean isPseudoLegal(int move) {
+		if (move == Move.NO_MOVE)
+			return false;
+		int startSqr = Move.getStartSqr(move);
+		int pieceIndex = Move.getPieceIndex(move);
+		if ((board.getPieceIndex(startSqr) != pieceIndex) || ((board.getOccupancy(whiteToPlay) & (1L << startSqr)) == 0))
+			return false;
 
-		for (int i = 0; i < Board.H1_SQR; i++) {
-			if (isMovableSqr(i)) {
-				continue;
+		long target = 1L << Move.getEndSqr(move);
+		int sqrMoveCount;
+		if (Move.isEnPassant(move)) {
+			int capturableSqr = enPassantRights.getCapturableSqr();
+			if (capturableSqr < 0)
+				return false;
+			sqrMoveCount = findEnPassantMoves(1L << capturableSqr, sqrMoves, 0);
+		} else if ((pieceIndex == Chess.WH_KING_INDEX) || (pieceIndex == Chess.BK_KING_INDEX)) {
+			if (Move.isCastling(move)) {
+				if (isCheck())
+					return false;
+				sqrMoveCount = findCastlingKingMoves(startSqr, target, sqrMoves, 0);
+			} else {
+				sqrMoveCount = findNormalKingMoves(startSqr, target & ~board.getOccupancy(whiteToPlay), sqrMoves, 0);
 			}
-			pseudoLegalMoves.addAll(findPseudoLegalPieceMoves(board.getSqr(i), i));
+		} else {
+			sqrMoveCount = findPieceMoves(board.getSqr(startSqr), startSqr, target & ~board.getOccupancy(whiteToPlay),
+					sqrMoves, 0);
+		}
+		for (int i = 0; i < sqrMoveCount; i++) {
+			if (sqrMoves[i] == move)
+				return true;
 		}
-		return pseudoLegalMoves;
+		return false;
 	}
 
 	/**
-	 * Returns the pseudo legal moves that this piece can make.
+	 * Adds the moves that this piece (other than a king) can make to the target
+	 * squares to the buffer.
 	 *
-	 * @param piece    character representing the piece
-	 * @param pieceSqr int index of the square the piece is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves for a single
-	 *         piece
+	 * @param piece     character representing the piece
+	 * @param pieceSqr  int index of the square the piece is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding this piece's moves
 	 */
-	public LinkedList<Move> findPseudoLegalPieceMoves(char piece, int pieceSqr) {
+	private int findPieceMoves(char piece, int pieceSqr, long targets, int[] moves, int moveCount) {
 		switch (piece) {
 		case Chess.WH_PAWN:
 		case Chess.BK_PAWN:
-			return findPawnMoves(pieceSqr);
+			return findPawnMoves(pieceSqr, targets, moves, moveCount);
 
 		case Chess.WH_ROOK:
 		case Chess.BK_ROOK:
-			return findStraightMoves(pieceSqr);
+			return findStraightMoves(pieceSqr, targets, moves, moveCount);
 
 		case Chess.WH_KNIGHT:
 		case Chess.BK_KNIGHT:
-			return findKnightMoves(pieceSqr);
+			return findKnightMoves(pieceSqr, targets, moves, moveCount);
 
 		case Chess.WH_BISHOP:
 		case Chess.BK_BISHOP:
-			return findDiagonalMoves(pieceSqr);
+			return findDiagonalMoves(pieceSqr, targets, moves, moveCount);
 
 		case Chess.WH_QUEEN:
 		case Chess.BK_QUEEN:
-			return findQueenMoves(pieceSqr);
-
-		case Chess.WH_KING:
-		case Chess.BK_KING:
-			return findKingMoves(pieceSqr);
+			return findQueenMoves(pieceSqr, targets, moves, moveCount);
 
 		default:
-			return new LinkedList<>();
+			return moveCount;
 		}
 	}
 
 	/**
-	 * Returns the moves that the knight can make.
+	 * Adds the moves that the knight can make to the target squares to the buffer.
 	 *
 	 * @param knightSqr int index of the square the knight is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves for this
-	 *         knight
-	 */
-	public LinkedList<Move> findKnightMoves(int knightSqr) {
-		LinkedList<Move> knightMoves = new LinkedList<>();
-		int[] testVectors = { Chess.NORTH_2 + Chess.EAST_1, Chess.NORTH_1 + Chess.EAST_2, Chess.SOUTH_1 + Chess.EAST_2,
-				Chess.SOUTH_2 + Chess.EAST_1, Chess.SOUTH_2 + Chess.WEST_1, Chess.SOUTH_1 + Chess.WEST_2,
-				Chess.NORTH_1 + Chess.WEST_2, Chess.NORTH_2 + Chess.WEST_1 };
-
-		for (int testVector : testVectors) {
-			int testSqr = knightSqr + testVector;
-			if (Board.hasExceededAnEdge(testSqr, testVector))
-				continue;
-			else if (isMovableSqr(testSqr))
-				knightMoves.addAll(constructMove(knightSqr, testSqr));
-		}
-		return knightMoves;
-	}
-
-	/**
-	 * Returns the moves that the king can make.
-	 *
-	 * @param kingSqr int index of the square the king is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves for this
-	 *         king
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding this knight's moves
 	 */
-	public LinkedList<Move> findKingMoves(int kingSqr) {
-		LinkedList<Move> kingMoves = new LinkedList<>();
-		kingMoves.addAll(findNormalKingMoves(kingSqr));
-		kingMoves.addAll(findCastlingKingMoves(kingSqr));
-		return kingMoves;
+	private int findKnightMoves(int knightSqr, long targets, int[] moves, int moveCount) {
+		return addMovesToTargets(moves, moveCount, knightSqr, Attacks.knightAttacks(knightSqr) & targets);
 	}
 
 	/**
-	 * Returns the standard (non castling) moves that the king can make.
+	 * Adds the standard (non castling) moves that the king can make to the target
+	 * squares to the buffer. Squares that are attacked are skipped, including
+	 * squares behind the king on the line of a slider that is checking it.
 	 * 
-	 * @param kingSqr int index of the square the king is on
-	 * @return <code>LinkedList</code> the non castling moves that the king can make
-	 */
-	private LinkedList<Move> findNormalKingMoves(int kingSqr) {
-		LinkedList<Move> normalKingMoves = new LinkedList<>();
-		int[] testVectors = { Chess.NORTH_1, Chess.NORTH_EAST_1, Chess.EAST_1, Chess.SOUTH_EAST_1, Chess.SOUTH_1,
-				Chess.SOUTH_WEST_1, Chess.WEST_1, Chess.NORTH_WEST_1 };
-		for (int testVector : testVectors) {
-			int testSqr = kingSqr + testVector;
-			if (Board.hasExceededAnEdge(testSqr, testVector))
-				continue;
-			else if (isMovableSqr(testSqr))
-				normalKingMoves.addAll(constructMove(kingSqr, testSqr));
+	 * @param kingSqr   int index of the square the king is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the non castling moves
+	 */
+	private int findNormalKingMoves(int kingSqr, long targets, int[] moves, int moveCount) {
+		long occupancyWithoutKing = board.getOccupancy() & ~(1L << kingSqr);
+		for (long kingTargets = Attacks.kingAttacks(kingSqr) & targets; kingTargets != 0; kingTargets &= kingTargets
+				- 1) {
+			int endSqr = Long.numberOfTrailingZeros(kingTargets);
+			if (findAttackers(endSqr, !whiteToPlay, occupancyWithoutKing) == 0)
+				moveCount = addMove(moves, moveCount, kingSqr, endSqr, 0);
 		}
-		return normalKingMoves;
+		return moveCount;
 	}
 
 	/**
-	 * Returns the castling moves that king can make.
+	 * Adds the castling moves that king can make to the buffer. This should only be
+	 * called when the king isn't in check. The squares the king passes over and
+	 * lands on must not be attacked.
 	 * 
-	 * @param kingSqr int index of the square the king is on
-	 * @return <code>LinkedList</code> the castling moves that the king can make
-	 */
-	private LinkedList<Move> findCastlingKingMoves(int kingSqr) {
-		LinkedList<Move> castlingKingMoves = new LinkedList<>();
-		if (castlingRights.kingCanCastleKingside(kingSqr) && board.isEmptySqr(kingSqr + Chess.EAST_1)
-				&& board.isEmptySqr(kingSqr + Chess.EAST_2)) {
-			castlingKingMoves.addAll(constructMove(kingSqr, kingSqr + Chess.EAST_2));
+	 * @param kingSqr   int index of the square the king is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the castling moves
+	 */
+	private int findCastlingKingMoves(int kingSqr, long targets, int[] moves, int moveCount) {
+		if (castlingRights.kingCanCastleKingside(kingSqr) && ((targets & (1L << (kingSqr + Chess.EAST_2))) != 0)
+				&& board.isEmptySqr(kingSqr + Chess.EAST_1) && board.isEmptySqr(kingSqr + Chess.EAST_2)
+				&& !isAttackedSqr(kingSqr + Chess.EAST_1, !whiteToPlay)
+				&& !isAttackedSqr(kingSqr + Chess.EAST_2, !whiteToPlay)) {
+			moveCount = addMove(moves, moveCount, kingSqr, kingSqr + Chess.EAST_2, Move.CASTLING_FLAG);
 		}
-		if (castlingRights.kingCanCastleQueenside(kingSqr) && board.isEmptySqr(kingSqr + Chess.WEST_1)
-				&& board.isEmptySqr(kingSqr + Chess.WEST_2) && board.isEmptySqr(kingSqr + Chess.WEST_3)) {
-			castlingKingMoves.addAll(constructMove(kingSqr, kingSqr + Chess.WEST_2));
+		if (castlingRights.kingCanCastleQueenside(kingSqr) && ((targets & (1L << (kingSqr + Chess.WEST_2))) != 0)
+				&& board.isEmptySqr(kingSqr + Chess.WEST_1) && board.isEmptySqr(kingSqr + Chess.WEST_2)
+				&& board.isEmptySqr(kingSqr + Chess.WEST_3) && !isAttackedSqr(kingSqr + Chess.WEST_1, !whiteToPlay)
+				&& !isAttackedSqr(kingSqr + Chess.WEST_2, !whiteToPlay)) {
+			moveCount = addMove(moves, moveCount, kingSqr, kingSqr + Chess.WEST_2, Move.CASTLING_FLAG);
 		}
-		return castlingKingMoves;
+		return moveCount;
 	}
 
 	/**
-	 * Returns the moves that the queen can make.
+	 * Adds the moves that the queen can make to the target squares to the buffer.
 	 *
-	 * @param queenSqr int index of the square the queen is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves for this
-	 *         queen
+	 * @param queenSqr  int index of the square the queen is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding this queen's moves
 	 */
-	public LinkedList<Move> findQueenMoves(int queenSqr) {
-		LinkedList<Move> queenMoves = new LinkedList<>();
-		queenMoves.addAll(findStraightMoves(queenSqr));
-		queenMoves.addAll(findDiagonalMoves(queenSqr));
-		return queenMoves;
+	private int findQueenMoves(int queenSqr, long targets, int[] moves, int moveCount) {
+		long queenTargets = Attacks.queenAttacks(queenSqr, board.getOccupancy()) & targets;
+		return addMovesToTargets(moves, moveCount, queenSqr, queenTargets);
 	}
 
 	/**
-	 * Returns the moves that the pawn can make.
+	 * Adds the moves that the pawn can make to the target squares to the buffer,
+	 * other than en passant.
 	 *
-	 * @param pawnSqr int index of the square the pawn is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves for this
-	 *         pawn
+	 * @param pawnSqr   int index of the square the pawn is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding this pawn's moves
 	 */
-	public LinkedList<Move> findPawnMoves(int pawnSqr) {
-		LinkedList<Move> pawnMoves = new LinkedList<>();
+	private int findPawnMoves(int pawnSqr, long targets, int[] moves, int moveCount) {
 		int movementVector;
 		if (whiteToPlay) {
 			movementVector = Chess.NORTH_1;
 		} else {
 			movementVector = Chess.SOUTH_1;
 		}
-		pawnMoves.addAll(findStraightPawnMoves(pawnSqr, movementVector));
-		pawnMoves.addAll(findDiagonalPawnMoves(pawnSqr, movementVector));
-		return pawnMoves;
+		moveCount = findStraightPawnMoves(pawnSqr, movementVector, targets, moves, moveCount);
+		long captureTargets = Attacks.pawnAttacks(pawnSqr, whiteToPlay) & board.getOccupancy(!whiteToPlay) & targets;
+		return addMovesToTargets(moves, moveCount, pawnSqr, captureTargets);
 	}
 
 	/**
-	 * Returns the pseudo legal moves that the pawn can capture on (diagonally).
+	 * Adds the moves that the pawn can make to the target squares ahead of it to
+	 * the buffer.
 	 *
 	 * @param pawnSqr        int index of the square the pawn is on
 	 * @param movementVector int direction vector of the pawn's movement
-	 * @return <code>LinkedList</code> the moves where the pawn can capture
-	 */
-	private LinkedList<Move> findDiagonalPawnMoves(int pawnSqr, int movementVector) {
-		LinkedList<Move> diagonalPawnMoves = new LinkedList<>();
-		int[] captureVectors = { Chess.EAST_1, Chess.WEST_1 };
-		for (int captureVector : captureVectors) {
-			int testSqr = pawnSqr + captureVector + movementVector;
-			if (Board.hasExceededAnEdge(testSqr, captureVector))
-				continue;
-			if (board.isCapturableSqr(testSqr, whiteToPlay)
-					|| enPassantRights.isCapturableSqr(pawnSqr + captureVector))
-				diagonalPawnMoves.addAll(constructMove(pawnSqr, testSqr));
+	 * @param targets        long bitboard of the squares the moves may end on
+	 * @param moves          int buffer that the packed moves are written to
+	 * @param moveCount      int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the straight moves
+	 */
+	private int findStraightPawnMoves(int pawnSqr, int movementVector, long targets, int[] moves, int moveCount) {
+		int testSqr = pawnSqr + movementVector;
+		if (!board.isEmptySqr(testSqr))
+			return moveCount;
+		if ((targets & (1L << testSqr)) != 0)
+			moveCount = addMove(moves, moveCount, pawnSqr, testSqr, 0);
+		testSqr += movementVector;
+		boolean onStartingRank = whiteToPlay ? Board.isRank2Sqr(pawnSqr) : Board.isRank7Sqr(pawnSqr);
+		if (onStartingRank && board.isEmptySqr(testSqr) && ((targets & (1L << testSqr)) != 0))
+			moveCount = addMove(moves, moveCount, pawnSqr, testSqr, Move.PAWN_DOUBLE_PUSH_FLAG);
+		return moveCount;
+	}
+
+	/**
+	 * Adds the legal en passant captures to the buffer. These are added when the
+	 * pawn that can be captured is one of the target squares, and each is made on
+	 * the board to test that it doesn't leave the king in check.
+	 *
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the en passant moves
+	 */
+	private int findEnPassantMoves(long targets, int[] moves, int moveCount) {
+		int capturableSqr = enPassantRights.getCapturableSqr();
+		if ((capturableSqr < 0) || ((targets & (1L << capturableSqr)) == 0))
+			return moveCount;
+		int endSqr;
+		int pawnIndex;
+		int capturedIndex;
+		if (whiteToPlay) {
+			endSqr = capturableSqr + Chess.NORTH_1;
+			pawnIndex = Chess.WH_PAWN_INDEX;
+			capturedIndex = Chess.BK_PAWN_INDEX;
+		} else {
+			endSqr = capturableSqr + Chess.SOUTH_1;
+			pawnIndex = Chess.BK_PAWN_INDEX;
+			capturedIndex = Chess.WH_PAWN_INDEX;
 		}
-		return diagonalPawnMoves;
+		long pawns = Attacks.pawnAttacks(endSqr, !whiteToPlay) & board.getBitboard(pawnIndex);
+		for (; pawns != 0; pawns &= pawns - 1) {
+			int move = Move.encode(Long.numberOfTrailingZeros(pawns), endSqr, pawnIndex, capturedIndex,
+					Chess.EMPTY_INDEX, Move.EN_PASSANT_FLAG);
+			if (!isSelfCheckMove(move))
+				moves[moveCount++] = move;
+		}
+		return moveCount;
 	}
 
 	/**
-	 * Returns the pseudo legal moves that the pawn can make for the 2 squares ahead
-	 * of it.
+	 * Adds the moves along straight directions to the target squares to the
+	 * buffer. This finds the moves that a rook can make.
 	 *
-	 * @param pawnSqr        int index of the square the pawn is on
-	 * @param movementVector int direction vector of the pawn's movement
-	 * @return <code>LinkedList</code> the moves that the pawn can make for the 2
-	 *         squares ahead of it
+	 * @param pieceSqr  int index of the square the piece is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the straight moves
 	 */
-	private LinkedList<Move> findStraightPawnMoves(int pawnSqr, int movementVector) {
-		LinkedList<Move> straightPawnMoves = new LinkedList<>();
-		int testSqr = pawnSqr + movementVector;
-		if (board.isEmptySqr(testSqr))
-			straightPawnMoves.addAll(constructMove(pawnSqr, testSqr));
-		testSqr += movementVector;
-		if (board.pawnCanMove2SqrsAhead(pawnSqr, movementVector))
-			straightPawnMoves.addAll(constructMove(pawnSqr, testSqr));
-		return straightPawnMoves;
-	}
-
-	/**
-	 * Returns the moves along straight directions. This finds the legal and pseudo
-	 * legal moves that a rook can make, or the moves for a queen's straight
-	 * directions.
-	 *
-	 * @param pieceSqr int index of the square the piece is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves in straight
-	 *         directions
-	 */
-	public LinkedList<Move> findStraightMoves(int pieceSqr) {
-		LinkedList<Move> straightMoves = new LinkedList<>();
-		int[] testVectors = { Chess.NORTH_1, Chess.EAST_1, Chess.SOUTH_1, Chess.WEST_1 };
-
-		for (int testVector : testVectors) {
-			for (int testSqr = (pieceSqr + testVector); !Board.hasExceededAnEdge(testSqr,
-					testVector); testSqr += testVector) {
-				if (board.isEmptySqr(testSqr)) {
-					straightMoves.addAll(constructMove(pieceSqr, testSqr));
-				} else if (board.isCapturableSqr(testSqr, whiteToPlay)) {
-					straightMoves.addAll(constructMove(pieceSqr, testSqr));
-					break;
-				} else {
-					break;
-				}
-			}
+	private int findStraightMoves(int pieceSqr, long targets, int[] moves, int moveCount) {
+		long straightTargets = Attacks.rookAttacks(pieceSqr, board.getOccupancy()) & targets;
+		return addMovesToTargets(moves, moveCount, pieceSqr, straightTargets);
+	}
+
+	/**
+	 * Adds the moves along diagonal directions to the target squares to the
+	 * buffer. This finds the moves that a bishop can make.
+	 *
+	 * @param pieceSqr  int index of the square the piece is on
+	 * @param targets   long bitboard of the squares the moves may end on
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @return int number of moves in the buffer after adding the diagonal moves
+	 */
+	private int findDiagonalMoves(int pieceSqr, long targets, int[] moves, int moveCount) {
+		long diagonalTargets = Attacks.bishopAttacks(pieceSqr, board.getOccupancy()) & targets;
+		return addMovesToTargets(moves, moveCount, pieceSqr, diagonalTargets);
+	}
+
+	/**
+	 * Adds a move from the start square to each of the target squares to the
+	 * buffer.
+	 *
+	 * @param moves     int buffer that the packed moves are written to
+	 * @param moveCount int number of moves already in the buffer
+	 * @param startSqr  int index of the square the piece is on
+	 * @param targets   long bitboard of the squares the piece can move to
+	 * @return int number of moves in the buffer after adding the moves
+	 */
+	private int addMovesToTargets(int[] moves, int moveCount, int startSqr, long targets) {
+		for (; targets != 0; targets &= targets - 1) {
+			moveCount = addMove(moves, moveCount, startSqr, Long.numberOfTrailingZeros(targets), 0);
 		}
-		return straightMoves;
+		return moveCount;
 	}
 
 	/**
-	 * Returns the moves along diagonal directions. This finds the legal and pseudo
-	 * legal moves that a bishop can make, or the moves for a queen's diagonal
-	 * directions.
+	 * Returns the pieces of the color to play that are pinned to their king. A
+	 * pinned piece is the only piece between its king and an opposing slider that
+	 * could attack the king along that line.
 	 *
-	 * @param pieceSqr int index of the square the piece is on
-	 * @return <code>LinkedList</code> the legal and pseudo legal moves in diagonal
-	 *         directions
+	 * @param kingSqr int index of the square the king of the color to play is on
+	 * @return long bitboard of the pinned pieces
 	 */
-	public LinkedList<Move> findDiagonalMoves(int pieceSqr) {
-		LinkedList<Move> diagonalMoves = new LinkedList<>();
-		int[] testVectors = { Chess.NORTH_EAST_1, Chess.SOUTH_EAST_1, Chess.SOUTH_WEST_1, Chess.NORTH_WEST_1 };
+	private long findPinnedPieces(int kingSqr) {
+		int colorOffset = whiteToPlay ? Chess.BK_PIECE_OFFSET : 0;
+		long queens = board.getBitboard(Chess.WH_QUEEN_INDEX + colorOffset);
+		long straightSliders = board.getBitboard(Chess.WH_ROOK_INDEX + colorOffset) | queens;
+		long diagonalSliders = board.getBitboard(Chess.WH_BISHOP_INDEX + colorOffset) | queens;
+		long snipers = (Attacks.rookAttacks(kingSqr, 0) & straightSliders)
+				| (Attacks.bishopAttacks(kingSqr, 0) & diagonalSliders);
+		long occupancy = board.getOccupancy();
+		long pinned = 0;
+		for (; snipers != 0; snipers &= snipers - 1) {
+			long blockers = Attacks.between(kingSqr, Long.numberOfTrailingZeros(snipers)) & occupancy;
+			if ((blockers != 0) && ((blockers & (blockers - 1)) == 0))
+				pinned |= blockers & board.getOccupancy(whiteToPlay);
+		}
+		return pinned;
+	}
 
-		for (int testVector : testVectors) {
-			for (int testSqr = (pieceSqr + testVector); !Board.hasExceededAnEdge(testSqr,
-					testVector); testSqr += testVector) {
-				if (board.isEmptySqr(testSqr)) {
-					diagonalMoves.addAll(constructMove(pieceSqr, testSqr));
-				} else if (board.isCapturableSqr(testSqr, whiteToPlay)) {
-					diagonalMoves.addAll(constructMove(pieceSqr, testSqr));
-					break;
-				} else {
-					break;
-				}
-			}
+	/**
+	 * Returns the material the color to play gains from the move once every
+	 * capture on its end square has been played out (static exchange evaluation).
+	 * Each side captures with its least valuable piece, and either side can stop
+	 * capturing when continuing would lose material. Sliders behind other pieces
+	 * join in once the pieces in front of them have captured (x-rays). The
+	 * exchange is worked out from the attacks on the square without making any
+	 * moves, and pins are ignored.
+	 *
+	 * @param move int packed move (usually a capture)
+	 * @return int centipawns gained by the color to play; negative if the move
+	 *         loses material
+	 */
+	public int see(int move) {
+		int endSqr = Move.getEndSqr(move);
+		long occupancy = findOccupancyAfterMove(move);
+		long attackers = findAttackers(endSqr, true, occupancy) | findAttackers(endSqr, false, occupancy);
+		int exchangeLength = 0;
+		exchangeGains[0] = findMaterialGain(move);
+		int nextVictimValue = findMovedPieceValue(move);
+		boolean whiteCapturing = !whiteToPlay;
+		while (true) {
+			attackers &= occupancy;
+			long sideAttackers = attackers & board.getOccupancy(whiteCapturing);
+			if (sideAttackers == 0)
+				break;
+			int attackerIndex = findLeastValuableAttacker(sideAttackers, whiteCapturing);
+			if (((attackerIndex == Chess.WH_KING_INDEX) || (attackerIndex == Chess.BK_KING_INDEX))
+					&& ((attackers & board.getOccupancy(!whiteCapturing)) != 0))
+				break;
+			exchangeLength++;
+			exchangeGains[exchangeLength] = nextVictimValue - exchangeGains[exchangeLength - 1];
+			nextVictimValue = Engine.PIECE_VALUES[attackerIndex];
+			occupancy ^= Long.lowestOneBit(sideAttackers & board.getBitboard(attackerIndex));
+			attackers |= findXrayAttackers(endSqr, occupancy);
+			whiteCapturing = !whiteCapturing;
+		}
+		for (; exchangeLength > 0; exchangeLength--) {
+			exchangeGains[exchangeLength - 1] = -Math.max(-exchangeGains[exchangeLength - 1],
+					exchangeGains[exchangeLength]);
+		}
+		return exchangeGains[0];
+	}
+
+	/**
+	 * Returns true if the static exchange evaluation of the move is at least the
+	 * threshold. This gives the same answer as comparing <code>see</code> to the
+	 * threshold, but stops as soon as the exchange can't cross the threshold
+	 * either way, so it is usually faster.
+	 *
+	 * @param move      int packed move (usually a capture)
+	 * @param threshold int centipawns the move must gain
+	 * @return <code>true</code> if the move gains at least the threshold;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean seeGE(int move, int threshold) {
+		// the balance is what the last side to capture is ahead of the threshold
+		// if the other side recaptures
+		int balance = findMaterialGain(move) - threshold;
+		if (balance < 0)
+			return false;
+		balance = findMovedPieceValue(move) - balance;
+		if (balance <= 0)
+			return true;
+
+		int endSqr = Move.getEndSqr(move);
+		long occupancy = findOccupancyAfterMove(move);
+		long attackers = findAttackers(endSqr, true, occupancy) | findAttackers(endSqr, false, occupancy);
+		boolean whiteCapturing = !whiteToPlay;
+		boolean moverWins = true;
+		while (true) {
+			attackers &= occupancy;
+			long sideAttackers = attackers & board.getOccupancy(whiteCapturing);
+			if (sideAttackers == 0)
+				break;
+			moverWins = !moverWins;
+			int attackerIndex = findLeastValuableAttacker(sideAttackers, whiteCapturing);
+			if ((attackerIndex == Chess.WH_KING_INDEX) || (attackerIndex == Chess.BK_KING_INDEX))
+				return ((attackers & board.getOccupancy(!whiteCapturing)) != 0) != moverWins;
+			balance = Engine.PIECE_VALUES[attackerIndex] - balance;
+			if (balance < (moverWins ? 1 : 0))
+				break;
+			occupancy ^= Long.lowestOneBit(sideAttackers & board.getBitboard(attackerIndex));
+			attackers |= findXrayAttackers(endSqr, occupancy);
+			whiteCapturing = !whiteCapturing;
 		}
-		return diagonalMoves;
+		return moverWins;
+	}
+
+	/**
+	 * Returns the material the move captures, plus what a pawn gains by
+	 * promoting.
+	 *
+	 * @param move int packed move
+	 * @return int centipawns of material gained
+	 */
+	static int findMaterialGain(int move) {
+		int gain = Engine.PIECE_VALUES[Move.getCapturedIndex(move)];
+		if (Move.isPromotion(move))
+			gain += Engine.PIECE_VALUES[Move.getPromoteToIndex(move)] - Engine.PIECE_VALUES[Chess.WH_PAWN_INDEX];
+		return gain;
+	}
+
+	/**
+	 * Returns the value of the piece that is on the end square after the move,
+	 * which is what the opponent gains by recapturing it.
+	 *
+	 * @param move int packed move
+	 * @return int centipawns of the moved (or promoted to) piece
+	 */
+	private static int findMovedPieceValue(int move) {
+		if (Move.isPromotion(move))
+			return Engine.PIECE_VALUES[Move.getPromoteToIndex(move)];
+		return Engine.PIECE_VALUES[Move.getPieceIndex(move)];
+	}
+
+	/**
+	 * Returns the occupied squares once the move has been made, without making it.
+	 * The end square is left empty, since the pieces capturing on it are tracked
+	 * separately.
+	 *
+	 * @param move int packed move
+	 * @return long bitboard of the occupied squares
+	 */
+	private long findOccupancyAfterMove(int move) {
+		long occupancy = board.getOccupancy() & ~(1L << Move.getStartSqr(move)) & ~(1L << Move.getEndSqr(move));
+		if (Move.isEnPassant(move))
+			occupancy &= ~(1L << Board.findEnPassantCapturedSqr(move));
+		return occupancy;
+	}
+
+	/**
+	 * Returns the piece index of the least valuable of the attackers.
+	 *
+	 * @param sideAttackers long bitboard of attackers that are all one color
+	 * @param white         boolean whether the attackers are white
+	 * @return int piece index of the least valuable attacker
+	 */
+	private int findLeastValuableAttacker(long sideAttackers, boolean white) {
+		int pieceIndex = white ? Chess.WH_PAWN_INDEX : Chess.BK_PAWN_INDEX;
+		while ((sideAttackers & board.getBitboard(pieceIndex)) == 0) {
+			pieceIndex++;
+		}
+		return pieceIndex;
+	}
+
+	/**
+	 * Returns the sliders of both colors that attack the square through the
+	 * occupancy, so sliders uncovered by a capture join the exchange.
+	 *
+	 * @param sqr       int index of the square
+	 * @param occupancy long bitboard of the squares that block sliders
+	 * @return long bitboard of the sliders attacking the square
+	 */
+	private long findXrayAttackers(int sqr, long occupancy) {
+		long queens = board.getBitboard(Chess.WH_QUEEN_INDEX) | board.getBitboard(Chess.BK_QUEEN_INDEX);
+		long diagonalSliders = board.getBitboard(Chess.WH_BISHOP_INDEX) | board.getBitboard(Chess.BK_BISHOP_INDEX)
+				| queens;
+		long straightSliders = board.getBitboard(Chess.WH_ROOK_INDEX) | board.getBitboard(Chess.BK_ROOK_INDEX)
+				| queens;
+		return (Attacks.bishopAttacks(sqr, occupancy) & diagonalSliders)
+				| (Attacks.rookAttacks(sqr, occupancy) & straightSliders);
 	}
 
 	/**
@@ -497,17 +1048,17 @@ public class Position {
 	 * Returns true if the move puts the king (of the color who makes that move)
 	 * into check or castles that king through check.
 	 *
-	 * @param move the move to be tested
+	 * @param move int packed move to be tested
 	 * @return <code>true</code> if this move puts the color that made it into
 	 *         check; <code>false</code> otherwise.
 	 */
-	public boolean isSelfCheckMove(Move move) {
-		Position tempPosition = clone();
-		tempPosition.makeMove(move);
-		return tempPosition.isAttackedSqr(tempPosition.board.findKingSqr(!tempPosition.whiteToPlay),
-				tempPosition.whiteToPlay)
-				|| (move.isCastling() && tempPosition.isAttackedSqr((move.getStartSqr() + move.getEndSqr()) / 2,
-						tempPosition.whiteToPlay));
+	public boolean isSelfCheckMove(int move) {
+		makeMove(move);
+		boolean isSelfCheck = isAttackedSqr(board.findKingSqr(!whiteToPlay), whiteToPlay)
+				|| (Move.isCastling(move)
+						&& isAttackedSqr((Move.getStartSqr(move) + Move.getEndSqr(move)) / 2, whiteToPlay));
+		unmakeMove(move);
+		return isSelfCheck;
 	}
 
 	/**
@@ -520,36 +1071,31 @@ public class Position {
 	 *         <code>false</code> otherwise.
 	 */
 	public boolean isAttackedSqr(int sqr, boolean whiteIsAttacking) {
-		Position tempPosition = clone();
-		if ((Chess.isWhitePiece(board.getSqr(sqr)) || (board.isEmptySqr(sqr))) && whiteIsAttacking) {
-			tempPosition.board.setSqr(Chess.BK_QUEEN, sqr);
-		} else if ((Chess.isBlackPiece(board.getSqr(sqr)) || (board.isEmptySqr(sqr))) && !whiteIsAttacking) {
-			tempPosition.board.setSqr(Chess.WH_QUEEN, sqr);
-		}
-
-		if (whiteToPlay != whiteIsAttacking) {
-			tempPosition.whiteToPlay = whiteIsAttacking;
-		}
-
-		LinkedList<Move> tempMoves = tempPosition.findPseudoLegalMoves();
-		for (Move move : tempMoves) {
-			if (move.getEndSqr() == sqr) {
-				return true;
-			}
-		}
-		return enPassantRights.isCapturableSqr(sqr);
+		return findAttackers(sqr, whiteIsAttacking, board.getOccupancy()) != 0;
 	}
 
 	/**
-	 * Returns true if this square can be moved to because it's empty or has a
-	 * capturable piece.
-	 * 
-	 * @param sqr int index of the square to test
-	 * @return <code>true</code> if this square is empty or has a piece that can be
-	 *         captured; <code>false</code> otherwise.
+	 * Returns the pieces of the corresponding color that attack the square. Rather
+	 * than generating the attacking color's moves, this looks outward from the
+	 * square: a pawn, knight or king attacks the square if one of them is on a
+	 * square the same piece could attack from here, and a slider attacks it if it
+	 * is the first piece along one of its rays.
+	 *
+	 * @param sqr              int index of the square to be tested
+	 * @param whiteIsAttacking boolean whether white is the attacking color
+	 * @param occupancy        long bitboard of the squares that block sliders
+	 * @return long bitboard of the attacking pieces
 	 */
-	private boolean isMovableSqr(int sqr) {
-		return board.isEmptySqr(sqr) || board.isCapturableSqr(sqr, whiteToPlay);
+	private long findAttackers(int sqr, boolean whiteIsAttacking, long occupancy) {
+		int colorOffset = whiteIsAttacking ? 0 : Chess.BK_PIECE_OFFSET;
+		long queens = board.getBitboard(Chess.WH_QUEEN_INDEX + colorOffset);
+		long straightSliders = board.getBitboard(Chess.WH_ROOK_INDEX + colorOffset) | queens;
+		long diagonalSliders = board.getBitboard(Chess.WH_BISHOP_INDEX + colorOffset) | queens;
+		return (Attacks.pawnAttacks(sqr, !whiteIsAttacking) & board.getBitboard(Chess.WH_PAWN_INDEX + colorOffset))
+				| (Attacks.knightAttacks(sqr) & board.getBitboard(Chess.WH_KNIGHT_INDEX + colorOffset))
+				| (Attacks.kingAttacks(sqr) & board.getBitboard(Chess.WH_KING_INDEX + colorOffset))
+				| (Attacks.bishopAttacks(sqr, occupancy) & diagonalSliders)
+				| (Attacks.rookAttacks(sqr, occupancy) & straightSliders);
 	}
 
 	/**
@@ -583,4 +1129,9 @@ public class Position {
 				&& castlingRights.equals(other.castlingRights) && enPassantRights.equals(other.enPassantRights);
 	}
 
+	@Override
+	public int hashCode() {
+		return Long.hashCode(key);
+	}
+
 }
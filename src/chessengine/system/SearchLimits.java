@@ -0,0 +1,126 @@
+package chessengine.system;
+
+/**
+ * Limits on how long an engine search may run: a maximum depth, and either a
+ * fixed time for the move or the time left on the clock plus the increment
+ * added after each move.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class SearchLimits {
+
+	/** Value of a time limit that isn't set. */
+	public static final long NO_LIMIT = -1;
+
+	/** The most plies the search may reach. */
+	private final int maxDepth;
+
+	/** Milliseconds to spend on the move; <code>NO_LIMIT</code> if not set. */
+	private final long moveTimeMs;
+
+	/** Milliseconds left on the clock of the color to play; <code>NO_LIMIT</code> if not set. */
+	private final long timeLeftMs;
+
+	/** Milliseconds added to the clock after each move. */
+	private final long incrementMs;
+
+	/**
+	 * Class constructor specifying every limit.
+	 *
+	 * @param maxDepth    int most plies the search may reach
+	 * @param moveTimeMs  long milliseconds to spend on the move;
+	 *                    <code>NO_LIMIT</code> to use the clock instead
+	 * @param timeLeftMs  long milliseconds left on the clock of the color to play;
+	 *                    <code>NO_LIMIT</code> if there is no clock
+	 * @param incrementMs long milliseconds added to the clock after each move
+	 * @throws IllegalArgumentException if the maximum depth is less than 1
+	 */
+	public SearchLimits(int maxDepth, long moveTimeMs, long timeLeftMs, long incrementMs) {
+		if (maxDepth < 1)
+			throw new IllegalArgumentException("Search depth must be at least 1: " + maxDepth);
+		this.maxDepth = Math.min(maxDepth, Engine.MAX_PLY - 1);
+		this.moveTimeMs = moveTimeMs;
+		this.timeLeftMs = timeLeftMs;
+		this.incrementMs = incrementMs;
+	}
+
+	/**
+	 * Returns limits that search to a fixed depth with no time limit.
+	 *
+	 * @param depth int number of plies to search
+	 * @return <code>SearchLimits</code> for a fixed depth search
+	 * @throws IllegalArgumentException if the depth is less than 1
+	 */
+	public static SearchLimits ofDepth(int depth) {
+		return new SearchLimits(depth, NO_LIMIT, NO_LIMIT, 0);
+	}
+
+	/**
+	 * Returns limits that search for a fixed time.
+	 *
+	 * @param moveTimeMs long milliseconds to spend on the move
+	 * @return <code>SearchLimits</code> for a fixed time search
+	 */
+	public static SearchLimits ofMoveTime(long moveTimeMs) {
+		return new SearchLimits(Engine.MAX_PLY - 1, moveTimeMs, NO_LIMIT, 0);
+	}
+
+	/**
+	 * Returns limits that budget the time for the move from a clock.
+	 *
+	 * @param timeLeftMs  long milliseconds left on the clock of the color to play
+	 * @param incrementMs long milliseconds added to the clock after each move
+	 * @return <code>SearchLimits</code> for a search played on a clock
+	 */
+	public static SearchLimits ofClock(long timeLeftMs, long incrementMs) {
+		return new SearchLimits(Engine.MAX_PLY - 1, NO_LIMIT, timeLeftMs, incrementMs);
+	}
+
+	/**
+	 * Returns the most plies the search may reach.
+	 *
+	 * @return int maximum depth in plies
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the milliseconds to spend on the move.
+	 *
+	 * @return long move time; <code>NO_LIMIT</code> if not set
+	 */
+	public long getMoveTimeMs() {
+		return moveTimeMs;
+	}
+
+	/**
+	 * Returns the milliseconds left on the clock of the color to play.
+	 *
+	 * @return long time left; <code>NO_LIMIT</code> if there is no clock
+	 */
+	public long getTimeLeftMs() {
+		return timeLeftMs;
+	}
+
+	/**
+	 * Returns the milliseconds added to the clock after each move.
+	 *
+	 * @return long increment
+	 */
+	public long getIncrementMs() {
+		return incrementMs;
+	}
+
+	/**
+	 * Returns true if the search is limited by time.
+	 *
+	 * @return <code>true</code> if a move time or clock is set;
+	 *         <code>false</code> if only the depth is limited.
+	 */
+	public boolean isTimed() {
+		return (moveTimeMs != NO_LIMIT) || (timeLeftMs != NO_LIMIT);
+	}
+
+}
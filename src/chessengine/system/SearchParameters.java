@@ -0,0 +1,200 @@
+package chessengine.system;
+
+/**
+ * Tunable margins of the pruning an engine search does near the leaves, kept
+ * out of the search code so they can be tuned, such as from self-play, without
+ * changing it. Each margin is in centipawns for each ply of depth left, so
+ * nodes further from the leaves need a wider margin to be pruned, and each kind
+ * of pruning is only done up to its maximum depth.
+ * <ul>
+ * <li>Futility pruning skips the quiet moves of a node whose static
+ * evaluation plus the margin can't reach alpha.</li>
+ * <li>Reverse futility pruning returns from a node whose static evaluation
+ * less the margin still beats beta.</li>
+ * <li>Razoring drops a node whose static evaluation is more than the margin
+ * below alpha into quiescence search, and returns if that confirms it.</li>
+ * </ul>
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class SearchParameters {
+
+	/** Deepest node that quiet moves are pruned at when no depth is given. */
+	public static final int DEFAULT_FUTILITY_MAX_DEPTH = 3;
+
+	/** Centipawns for each ply of the futility margin when no margin is given. */
+	public static final int DEFAULT_FUTILITY_MARGIN = 150;
+
+	/** Deepest node that is cut off by reverse futility pruning when no depth is given. */
+	public static final int DEFAULT_REVERSE_FUTILITY_MAX_DEPTH = 6;
+
+	/** Centipawns for each ply of the reverse futility margin when no margin is given. */
+	public static final int DEFAULT_REVERSE_FUTILITY_MARGIN = 120;
+
+	/** Deepest node that is razored when no depth is given. */
+	public static final int DEFAULT_RAZORING_MAX_DEPTH = 3;
+
+	/** Centipawns for each ply of the razoring margin when no margin is given. */
+	public static final int DEFAULT_RAZORING_MARGIN = 250;
+
+	/** Deepest node that quiet moves are pruned at; 0 to turn futility pruning off. */
+	private int futilityMaxDepth;
+
+	/** Centipawns for each ply of the futility margin. */
+	private int futilityMargin;
+
+	/** Deepest node cut off by reverse futility pruning; 0 to turn it off. */
+	private int reverseFutilityMaxDepth;
+
+	/** Centipawns for each ply of the reverse futility margin. */
+	private int reverseFutilityMargin;
+
+	/** Deepest node that is razored; 0 to turn razoring off. */
+	private int razoringMaxDepth;
+
+	/** Centipawns for each ply of the razoring margin. */
+	private int razoringMargin;
+
+	/**
+	 * Class constructor for the default parameters.
+	 */
+	public SearchParameters() {
+		this.futilityMaxDepth = DEFAULT_FUTILITY_MAX_DEPTH;
+		this.futilityMargin = DEFAULT_FUTILITY_MARGIN;
+		this.reverseFutilityMaxDepth = DEFAULT_REVERSE_FUTILITY_MAX_DEPTH;
+		this.reverseFutilityMargin = DEFAULT_REVERSE_FUTILITY_MARGIN;
+		this.razoringMaxDepth = DEFAULT_RAZORING_MAX_DEPTH;
+		this.razoringMargin = DEFAULT_RAZORING_MARGIN;
+	}
+
+	/**
+	 * Returns the deepest node that quiet moves are pruned at.
+	 *
+	 * @return int depth in plies; 0 if futility pruning is off
+	 */
+	public int getFutilityMaxDepth() {
+		return futilityMaxDepth;
+	}
+
+	/**
+	 * Sets the deepest node that quiet moves are pruned at.
+	 *
+	 * @param futilityMaxDepth int depth in plies; 0 to turn futility pruning off
+	 * @throws IllegalArgumentException if the depth is negative
+	 */
+	public void setFutilityMaxDepth(int futilityMaxDepth) {
+		this.futilityMaxDepth = requireNonNegative("Futility max depth", futilityMaxDepth);
+	}
+
+	/**
+	 * Returns the futility margin for each ply of depth.
+	 *
+	 * @return int margin in centipawns
+	 */
+	public int getFutilityMargin() {
+		return futilityMargin;
+	}
+
+	/**
+	 * Sets the futility margin for each ply of depth.
+	 *
+	 * @param futilityMargin int margin in centipawns
+	 * @throws IllegalArgumentException if the margin is negative
+	 */
+	public void setFutilityMargin(int futilityMargin) {
+		this.futilityMargin = requireNonNegative("Futility margin", futilityMargin);
+	}
+
+	/**
+	 * Returns the deepest node that is cut off by reverse futility pruning.
+	 *
+	 * @return int depth in plies; 0 if reverse futility pruning is off
+	 */
+	public int getReverseFutilityMaxDepth() {
+		return reverseFutilityMaxDepth;
+	}
+
+	/**
+	 * Sets the deepest node that is cut off by reverse futility pruning.
+	 *
+	 * @param reverseFutilityMaxDepth int depth in plies; 0 to turn reverse
+	 *                                futility pruning off
+	 * @throws IllegalArgumentException if the depth is negative
+	 */
+	public void setReverseFutilityMaxDepth(int reverseFutilityMaxDepth) {
+		this.reverseFutilityMaxDepth = requireNonNegative("Reverse futility max depth", reverseFutilityMaxDepth);
+	}
+
+	/**
+	 * Returns the reverse futility margin for each ply of depth.
+	 *
+	 * @return int margin in centipawns
+	 */
+	public int getReverseFutilityMargin() {
+		return reverseFutilityMargin;
+	}
+
+	/**
+	 * Sets the reverse futility margin for each ply of depth.
+	 *
+	 * @param reverseFutilityMargin int margin in centipawns
+	 * @throws IllegalArgumentException if the margin is negative
+	 */
+	public void setReverseFutilityMargin(int reverseFutilityMargin) {
+		this.reverseFutilityMargin = requireNonNegative("Reverse futility margin", reverseFutilityMargin);
+	}
+
+	/**
+	 * Returns the deepest node that is razored.
+	 *
+	 * @return int depth in plies; 0 if razoring is off
+	 */
+	public int getRazoringMaxDepth() {
+		return razoringMaxDepth;
+	}
+
+	/**
+	 * Sets the deepest node that is razored.
+	 *
+	 * @param razoringMaxDepth int depth in plies; 0 to turn razoring off
+	 * @throws IllegalArgumentException if the depth is negative
+	 */
+	public void setRazoringMaxDepth(int razoringMaxDepth) {
+		this.razoringMaxDepth = requireNonNegative("Razoring max depth", razoringMaxDepth);
+	}
+
+	/**
+	 * Returns the razoring margin for each ply of depth.
+	 *
+	 * @return int margin in centipawns
+	 */
+	public int getRazoringMargin() {
+		return razoringMargin;
+	}
+
+	/**
+	 * Sets the razoring margin for each ply of depth.
+	 *
+	 * @param razoringMargin int margin in centipawns
+	 * @throws IllegalArgumentException if the margin is negative
+	 */
+	public void setRazoringMargin(int razoringMargin) {
+		this.razoringMargin = requireNonNegative("Razoring margin", razoringMargin);
+	}
+
+	/**
+	 * Returns the value if it isn't negative.
+	 *
+	 * @param name  String name of the parameter, for the exception message
+	 * @param value int value of the parameter
+	 * @return int the value
+	 * @throws IllegalArgumentException if the value is negative
+	 */
+	private static int requireNonNegative(String name, int value) {
+		if (value < 0)
+			throw new IllegalArgumentException(name + " must not be negative: " + value);
+		return value;
+	}
+
+}
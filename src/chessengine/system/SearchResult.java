@@ -0,0 +1,69 @@
+package chessengine.system;
+
+/**
+ * The result of an engine search: the top move found and its score.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class SearchResult {
+
+	/** The packed top move; <code>Move.NO_MOVE</code> if there were no legal moves. */
+	private final int move;
+
+	/**
+	 * Score of the top move in centipawns from the perspective of the color to
+	 * play. Mates are scored as <code>Engine.MATE_SCORE</code> less the number of
+	 * plies until mate.
+	 */
+	private final int score;
+
+	/**
+	 * Class constructor specifying the top move and its score.
+	 *
+	 * @param move  int packed top move; <code>Move.NO_MOVE</code> if there were no
+	 *              legal moves
+	 * @param score int score of the top move for the color to play
+	 */
+	public SearchResult(int move, int score) {
+		this.move = move;
+		this.score = score;
+	}
+
+	/**
+	 * Returns the packed top move.
+	 *
+	 * @return int packed top move; <code>Move.NO_MOVE</code> if there were no
+	 *         legal moves
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * Returns the score of the top move for the color to play. If there were no
+	 * legal moves, this is the score of the position itself: a mated score for
+	 * checkmate or a draw score for stalemate.
+	 *
+	 * @return int score in centipawns
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns true if the search found a move to make.
+	 *
+	 * @return <code>true</code> if there was a legal move; <code>false</code> if
+	 *         the position is checkmate or stalemate.
+	 */
+	public boolean hasMove() {
+		return move != Move.NO_MOVE;
+	}
+
+	@Override
+	public String toString() {
+		return (hasMove() ? Move.toCoordinateString(move) : "none") + " (" + score + ")";
+	}
+
+}
@@ -0,0 +1,1021 @@
+package chessengine.system;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One thread's share of an engine search. Each worker searches the root position with iterative
+ * deepening on its own copy of the position, with its own move buffers, killers and history, so
+ * workers never write to each other's state. They share only the engine's transposition table.
+ * <p>
+ * With more than 1 worker the engine runs a Lazy SMP search: every worker searches the same root,
+ * and they help each other through the shared table, since a position one worker has searched is a
+ * cutoff or a good first move for the others. Helper workers with an odd index search 1 ply deeper
+ * than the main worker at each iteration, so the workers spread over more of the tree than the main
+ * worker would reach alone. Only the main worker's result is the engine's result; once it finishes
+ * it asks the helpers to stop.
+ * <p>
+ * In fork-join mode the engine instead runs a deterministic young brothers wait search on a
+ * <code>ForkJoinPool</code>. At the root and at any node deep enough, the first move is searched
+ * by the node's own worker, since it usually either cuts the node off or sets the window that the
+ * other moves are searched with. Only then are the remaining moves (the younger brothers) searched
+ * as parallel tasks, each on a worker of its own. The results are combined in move order rather
+ * than in the order the tasks finish, so the scores don't depend on the timing of the threads
+ * (other than through the shared table). When a move cuts the node off, the tasks of the moves
+ * after it are aborted, along with any tasks they have split into.
+ * 
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+class SearchWorker implements Runnable {
+	
+	/** Bound of the search window that every score is inside of. */
+	private static final int INFINITE_SCORE = Engine.MATE_SCORE + 1;
+	
+	/** Mask of the node count that sets how often the search checks if it is out of time. */
+	private static final long TIME_CHECK_MASK = 1023;
+	
+	/** The shallowest depth searched with an aspiration window around the last iteration's score. */
+	private static final int ASPIRATION_MIN_DEPTH = 4;
+	
+	/** Centipawns either side of the last iteration's score that an aspiration window starts at. */
+	private static final int ASPIRATION_WINDOW = 25;
+	
+	/** Extensions stop once a line is this many times as deep as the iteration's depth. */
+	private static final int MAX_EXTENSION_PLY_FACTOR = 2;
+	
+	/** The shallowest depth that the table move is tested for being singular at. */
+	private static final int SINGULAR_MIN_DEPTH = 6;
+	
+	/** The most plies shallower than the node that the table entry may be to test its move. */
+	private static final int SINGULAR_ENTRY_DEPTH_MARGIN = 3;
+	
+	/** Centipawns for each ply of depth that every other move must fall short of the table score. */
+	private static final int SINGULAR_MARGIN = 2;
+	
+	/** The shallowest depth that null move pruning is tried at. */
+	private static final int NULL_MOVE_MIN_DEPTH = 3;
+	
+	/** Plies the search after a null move is reduced by, on top of the null move's own ply. */
+	private static final int NULL_MOVE_REDUCTION = 2;
+	
+	/** Every this many plies of depth reduce the search after a null move by another ply. */
+	private static final int NULL_MOVE_DEPTH_DIVISOR = 4;
+	
+	/** The shallowest depth at which a null move cutoff is verified by a reduced normal search. */
+	private static final int NULL_MOVE_VERIFICATION_DEPTH = 8;
+	
+	/** The shallowest depth that late moves are searched to a reduced depth at. */
+	private static final int LMR_MIN_DEPTH = 3;
+	
+	/** The number of moves searched at full depth before later moves are reduced. */
+	private static final int LMR_FULL_DEPTH_MOVES = 3;
+	
+	/** Reduction of every late move before the depth and move number are taken into account. */
+	private static final double LMR_BASE = 0.75;
+	
+	/** Divisor of the product of the logarithms of the depth and move number in a reduction. */
+	private static final double LMR_DIVISOR = 2.25;
+	
+	/** History score above which a quiet move is reduced 1 ply less, since it has often cut off. */
+	private static final int LMR_GOOD_HISTORY_SCORE = 1 << 12;
+	
+	/**
+	 * Plies that a late move is reduced by, indexed by the depth and then the move's number in the
+	 * order it was searched (from 1). Reductions grow slowly with both, as the product of their
+	 * logarithms.
+	 */
+	private static final int[][] LMR_REDUCTIONS = new int[Engine.MAX_PLY][Position.MAX_MOVES];
+	
+	static {
+		for (int depth = 1; depth < Engine.MAX_PLY; depth++) {
+			for (int moveNumber = 1; moveNumber < Position.MAX_MOVES; moveNumber++) {
+				LMR_REDUCTIONS[depth][moveNumber] = (int) (LMR_BASE
+						+ (Math.log(depth) * Math.log(moveNumber) / LMR_DIVISOR));
+			}
+		}
+	}
+	
+	/** The shallowest depth that a node's moves after the first are searched in parallel at. */
+	private static final int SPLIT_MIN_DEPTH = 4;
+	
+	/**
+	 * Margin added to what a capture gains in quiescence search before it is pruned for not being
+	 * able to raise the score to alpha, to allow for positional gains.
+	 */
+	private static final int DELTA_MARGIN = 200;
+	
+	/** Engine whose search this worker is part of. */
+	private final Engine engine;
+	
+	/** Index of this worker; the main worker is 0. */
+	private final int index;
+	
+	/** Results of earlier searches of positions, shared by every worker of the engine. */
+	private final TranspositionTable transpositionTable;
+	
+	/** Decides when the search should stop, which only the main worker checks. */
+	private final TimeManager timeManager;
+	
+	/** One reusable move buffer for each ply of the search so generating moves doesn't allocate. */
+	private final int[][] moveBuffers;
+	
+	/** One move picker for each ply of the search, each handing out the moves of its ply's buffer. */
+	private final MovePicker[] movePickers;
+	
+	/** Killer moves and history scores used to order quiet moves. */
+	private final MoveHistory moveHistory;
+	
+	/** <code>Position</code> being searched, which is this worker's own copy for helper workers. */
+	private Position position;
+	
+	/** Limits on the depth and time of the current search. */
+	private SearchLimits limits;
+	
+	/** Margins of the pruning the current search does near the leaves. */
+	private SearchParameters parameters;
+	
+	/** The top move and score of the deepest iteration this worker has completed. */
+	private SearchResult result;
+	
+	/** The number of nodes visited by the current search. */
+	private long nodeCount;
+	
+	/** The deepest iteration of the current search that has completed. */
+	private int completedDepth;
+	
+	/** Whether the current search ran out of time, or its split move was aborted, and is unwinding. */
+	private boolean stopped;
+	
+	/** Split point of the move this worker is searching as a task; <code>null</code> if none. */
+	private SplitPoint splitPoint;
+	
+	/** Index of the move this worker is searching among the moves of its split point. */
+	private int splitIndex;
+	
+	/** Depth of the current iteration, which limits how deep extensions can take a line. */
+	private int rootDepth;
+	
+	/** Move left out of the node at each ply while testing if it is singular; usually none. */
+	private final int[] excludedMoves = new int[Engine.MAX_PLY];
+	
+	/**
+	 * Class constructor specifying the engine the worker searches for and its index.
+	 * 
+	 * @param engine             <code>Engine</code> whose search this worker is part of
+	 * @param index              int index of this worker; 0 for the main worker and 1 or more for
+	 *                           the helpers and the workers of split moves
+	 * @param transpositionTable <code>TranspositionTable</code> shared by the engine's workers
+	 * @param timeManager        <code>TimeManager</code> of the engine's searches
+	 */
+	SearchWorker(Engine engine, int index, TranspositionTable transpositionTable, TimeManager timeManager) {
+		this.engine = engine;
+		this.index = index;
+		this.transpositionTable = transpositionTable;
+		this.timeManager = timeManager;
+		this.moveBuffers = new int[Engine.MAX_PLY][Position.MAX_MOVES];
+		this.movePickers = new MovePicker[Engine.MAX_PLY];
+		for (int ply = 0; ply < Engine.MAX_PLY; ply++) {
+			movePickers[ply] = new MovePicker(moveBuffers[ply]);
+		}
+		this.moveHistory = new MoveHistory();
+	}
+	
+	/**
+	 * Prepares the worker to search the position. The main worker searches the position itself, and
+	 * the helpers each search a copy.
+	 * 
+	 * @param position   <code>Position</code> to be searched for the top move
+	 * @param limits     <code>SearchLimits</code> on the depth and time of the search
+	 * @param parameters <code>SearchParameters</code> of the pruning near the leaves
+	 */
+	void prepare(Position position, SearchLimits limits, SearchParameters parameters) {
+		this.position = isMainWorker() ? position : new Position(position);
+		this.limits = limits;
+		this.parameters = parameters;
+		this.result = null;
+		this.nodeCount = 0;
+		this.splitPoint = null;
+	}
+	
+	/**
+	 * Resets the node count of a worker used for split moves before a new search.
+	 */
+	void clearNodeCount() {
+		nodeCount = 0;
+	}
+	
+	/**
+	 * Returns true if this is the main worker, which keeps time and reports the engine's result.
+	 * 
+	 * @return <code>true</code> if this is the main worker; <code>false</code> for a helper.
+	 */
+	boolean isMainWorker() {
+		return index == 0;
+	}
+	
+	/**
+	 * Returns the top move and score of the deepest iteration this worker completed.
+	 * 
+	 * @return <code>SearchResult</code> with the top move and its score; <code>null</code> if no
+	 *         iteration completed
+	 */
+	SearchResult getResult() {
+		return result;
+	}
+	
+	/**
+	 * Returns the number of nodes this worker visited in the last search.
+	 * 
+	 * @return long number of positions searched, including quiescence search
+	 */
+	long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * Searches the prepared position, on the thread that calls this.
+	 */
+	@Override
+	public void run() {
+		moveHistory.newSearch();
+		completedDepth = 0;
+		stopped = false;
+		
+		int[] legalMoves = moveBuffers[0];
+		int legalMoveCount = position.findLegalMoves(legalMoves);
+		if (legalMoveCount == 0) {
+			result = new SearchResult(Move.NO_MOVE, scoreNoLegalMoves(0));
+			return;
+		}
+		
+		for (int depth = 1 + (index % 2); depth <= limits.getMaxDepth(); depth++) {
+			SearchResult iterationResult = searchIteration(depth, legalMoves, legalMoveCount);
+			if (stopped || engine.isStopRequested())
+				break;
+			result = iterationResult;
+			completedDepth = depth;
+			if (isMainWorker()) {
+				engine.completeIteration();
+				timeManager.completeIteration(result.getMove());
+				if (Engine.isMateScore(result.getScore()) || !timeManager.canStartIteration())
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * Searches the root moves to the depth and returns the top move and its score. The score rarely
+	 * moves far from one iteration to the next, so once the last iteration's score is known the
+	 * root is first searched with a narrow window around it (an aspiration window), which cuts off
+	 * far more of the tree than the full window. If the score falls outside the window, the side
+	 * it fell out of is widened, by twice as much each time, and the root is searched again.
+	 * Mate scores aren't near the next iteration's score, so they are searched with the full window.
+	 * 
+	 * @param depth          int number of plies to search
+	 * @param legalMoves     int buffer of the packed legal root moves
+	 * @param legalMoveCount int number of legal root moves
+	 * @return <code>SearchResult</code> with the top move and its score; meaningless if the search
+	 *         was stopped
+	 */
+	private SearchResult searchIteration(int depth, int[] legalMoves, int legalMoveCount) {
+		rootDepth = depth;
+		int alpha = -INFINITE_SCORE;
+		int beta = INFINITE_SCORE;
+		int window = ASPIRATION_WINDOW;
+		if ((depth >= ASPIRATION_MIN_DEPTH) && (result != null) && !Engine.isMateScore(result.getScore())) {
+			alpha = Math.max(result.getScore() - window, -INFINITE_SCORE);
+			beta = Math.min(result.getScore() + window, INFINITE_SCORE);
+		}
+		while (true) {
+			SearchResult iterationResult = searchRoot(depth, alpha, beta, legalMoves, legalMoveCount);
+			if (stopped || engine.isStopRequested())
+				return iterationResult;
+			int score = iterationResult.getScore();
+			if (score <= alpha) {
+				alpha = Math.max(score - window, -INFINITE_SCORE);
+			} else if (score >= beta) {
+				beta = Math.min(score + window, INFINITE_SCORE);
+			} else {
+				return iterationResult;
+			}
+			window *= 2;
+		}
+	}
+	
+	/**
+	 * Searches each of the root moves to the depth within the window and returns the top move and
+	 * its score. The top move is swapped to the front of the root moves, so the next search of the
+	 * root searches it first. Each move is searched as it would be in <code>negamax</code>,
+	 * including in parallel in fork-join mode.
+	 * 
+	 * @param depth          int number of plies to search
+	 * @param alpha          int score the color to play is already guaranteed
+	 * @param beta           int score the opponent is already guaranteed to hold the color to play below
+	 * @param legalMoves     int buffer of the packed legal root moves
+	 * @param legalMoveCount int number of legal root moves
+	 * @return <code>SearchResult</code> with the top move and its score; the score is alpha if no
+	 *         move beats alpha, and at least beta if a move reaches beta
+	 */
+	private SearchResult searchRoot(int depth, int alpha, int beta, int[] legalMoves, int legalMoveCount) {
+		boolean inCheck = position.isCheck();
+		int topMoveIndex = 0;
+		MoveTask[] tasks = null;
+		for (int i = 0; i < legalMoveCount; i++) {
+			int score;
+			if (tasks == null) {
+				position.makeMove(legalMoves[i]);
+				score = searchMove(legalMoves[i], i + 1, depth, alpha, beta, 0, inCheck, false);
+				position.unmakeMove(legalMoves[i]);
+			} else {
+				score = tasks[i - 1].join();
+			}
+			if (stopped)
+				break;
+			if (score > alpha) {
+				alpha = score;
+				topMoveIndex = i;
+				if (score >= beta)
+					break;
+			}
+			if ((i == 0) && (legalMoveCount > 1) && canSplit(depth)) {
+				tasks = createMoveTasks(legalMoves, 1, legalMoveCount, 2, depth, alpha, beta, 0, inCheck);
+				invokeMoveTasks(tasks);
+				if (stopped)
+					break;
+			}
+		}
+		int topMove = legalMoves[topMoveIndex];
+		legalMoves[topMoveIndex] = legalMoves[0];
+		legalMoves[0] = topMove;
+		return new SearchResult(topMove, alpha);
+	}
+	
+	/**
+	 * Returns the score of the position for the color to play, searched to the depth. Every score is
+	 * from the perspective of the color to play, so a move's score is the negated score of the
+	 * position after it. Once a move scores at least beta the opponent would avoid this position,
+	 * so the rest of the moves aren't searched.
+	 * <p>
+	 * The moves are searched as a principal variation search: the first move is expected to be the
+	 * best, so each later move is only searched with a null window around alpha to prove it is no
+	 * better, and is searched again with the full window if it is. Late quiet moves are also
+	 * expected to be poor, so they are searched to a reduced depth (late move reductions) that grows
+	 * with the logarithms of the depth and the move number, and searched again at full depth if they
+	 * beat alpha. Captures, checks and moves with a good history are reduced less.
+	 * <p>
+	 * Before the moves are searched, the color to play passes the turn (a null move) and the
+	 * opponent's reply is searched to a reduced depth, which is reduced further the deeper the
+	 * search. If the score still reaches beta, a real move would almost always too, so the
+	 * position is cut off. This isn't done in check, where passing is illegal, or when the color
+	 * to play has only pawns, where zugzwang makes passing better than any move. Deep cutoffs are
+	 * verified by a reduced search of the real moves, to catch zugzwang in other positions.
+	 * <p>
+	 * Near the leaves, nodes outside the principal variation are pruned by how far their static
+	 * evaluation is from the window, with margins from the search parameters that grow with the
+	 * depth. A node whose evaluation beats beta by the margin is cut off (reverse futility pruning),
+	 * and one whose evaluation is far below alpha is searched by quiescence search alone if that
+	 * confirms it fails low (razoring). When the evaluation plus the margin can't reach alpha, the
+	 * quiet moves after the first that don't give check are skipped (futility pruning), since only
+	 * a capture or a check is likely to change the score that much.
+	 * 
+	 * @param depth         int number of plies left to search
+	 * @param alpha         int score the color to play is already guaranteed elsewhere in the search
+	 * @param beta          int score the opponent is already guaranteed to hold the color to play below
+	 * @param ply           int number of plies from the root of the search
+	 * @param allowNullMove boolean whether a null move may be tried, which it can't right after
+	 *                      another null move or while verifying one
+	 * @return int score of the position; at least beta if the search was cut off
+	 */
+	private int negamax(int depth, int alpha, int beta, int ply, boolean allowNullMove) {
+		checkTime();
+		if (stopped)
+			return 0;
+		if (depth == 0)
+			return quiescence(alpha, beta, ply);
+		if (ply >= Engine.MAX_PLY)
+			return position.evaluate();
+		
+		int excludedMove = excludedMoves[ply];
+		long key = position.getKey();
+		long entry = transpositionTable.probe(key);
+		int entryMove = Move.NO_MOVE;
+		if (entry != TranspositionTable.NO_ENTRY) {
+			entryMove = TranspositionTable.getMove(entry);
+			if ((TranspositionTable.getDepth(entry) >= depth) && (excludedMove == Move.NO_MOVE)) {
+				int entryScore = scoreFromTable(TranspositionTable.getScore(entry), ply);
+				int bound = TranspositionTable.getBound(entry);
+				if ((bound == TranspositionTable.BOUND_EXACT)
+						|| ((bound == TranspositionTable.BOUND_LOWER) && (entryScore >= beta))
+						|| ((bound == TranspositionTable.BOUND_UPPER) && (entryScore <= alpha)))
+					return entryScore;
+			}
+		}
+		
+		boolean inCheck = position.isCheck();
+		boolean pvNode = beta - alpha > 1;
+		int staticScore = inCheck ? -INFINITE_SCORE : position.evaluate();
+		// a singular extension test must search every move but the excluded one, so it isn't pruned
+		boolean staticPruning = !pvNode && !inCheck && (excludedMove == Move.NO_MOVE);
+		if (staticPruning) {
+			if ((depth <= parameters.getReverseFutilityMaxDepth()) && !Engine.isMateScore(beta)
+					&& (staticScore - (parameters.getReverseFutilityMargin() * depth) >= beta))
+				return staticScore;
+			if ((depth <= parameters.getRazoringMaxDepth())
+					&& (staticScore + (parameters.getRazoringMargin() * depth) <= alpha)) {
+				int score = quiescence(alpha, beta, ply);
+				if (stopped)
+					return 0;
+				if (score <= alpha)
+					return score;
+			}
+		}
+		boolean futilityPruning = staticPruning && (depth <= parameters.getFutilityMaxDepth())
+				&& !Engine.isMateScore(alpha) && (staticScore + (parameters.getFutilityMargin() * depth) <= alpha);
+		
+		if (allowNullMove && !inCheck && (depth >= NULL_MOVE_MIN_DEPTH) && !Engine.isMateScore(beta)
+				&& position.hasNonPawnMaterial() && (staticScore >= beta)) {
+			int nullMoveDepth = Math.max(depth - 1 - NULL_MOVE_REDUCTION - (depth / NULL_MOVE_DEPTH_DIVISOR), 0);
+			position.makeNullMove();
+			int score = -negamax(nullMoveDepth, -beta, -beta + 1, ply + 1, false);
+			position.unmakeNullMove();
+			if (stopped)
+				return 0;
+			if (score >= beta) {
+				if (Engine.isMateScore(score))
+					score = beta;
+				if (depth < NULL_MOVE_VERIFICATION_DEPTH)
+					return score;
+				int verifiedScore = negamax(nullMoveDepth, beta - 1, beta, ply, false);
+				if (stopped)
+					return 0;
+				if (verifiedScore >= beta)
+					return score;
+			}
+		}
+		
+		boolean singular = (depth >= SINGULAR_MIN_DEPTH) && (entryMove != Move.NO_MOVE)
+				&& (excludedMove == Move.NO_MOVE) && isSingularMove(entry, depth, ply);
+		if (stopped)
+			return 0;
+		
+		MovePicker movePicker = movePickers[ply];
+		movePicker.startMainSearch(position, moveHistory, entryMove, ply);
+		
+		int originalAlpha = alpha;
+		int topScore = -INFINITE_SCORE;
+		int topMove = Move.NO_MOVE;
+		int moveNumber = 0;
+		MoveTask[] tasks = null;
+		while (true) {
+			int move;
+			int score;
+			if (tasks == null) {
+				move = movePicker.nextMove();
+				if (move == Move.NO_MOVE)
+					break;
+				if ((move == excludedMove) || (futilityPruning && (moveNumber > 0) && isQuietNonCheck(move)))
+					continue;
+				moveNumber++;
+				position.makeMove(move);
+				score = searchMove(move, moveNumber, depth, alpha, beta, ply, inCheck, singular && (move == entryMove));
+				position.unmakeMove(move);
+			} else {
+				if (moveNumber == tasks.length + 1)
+					break;
+				MoveTask task = tasks[moveNumber++ - 1];
+				move = task.move;
+				score = task.join();
+			}
+			if (stopped)
+				return 0;
+			if (score > topScore) {
+				topScore = score;
+				topMove = move;
+				if (score > alpha) {
+					alpha = score;
+					if (score >= beta) {
+						if (!Move.isCapture(move) && !Move.isPromotion(move))
+							moveHistory.recordCutoff(move, ply, depth);
+						break;
+					}
+				}
+			}
+			if ((moveNumber == 1) && canSplit(depth)) {
+				tasks = splitLaterMoves(movePicker, moveNumber, depth, alpha, beta, ply, inCheck, excludedMove,
+						futilityPruning);
+				invokeMoveTasks(tasks);
+				if (stopped)
+					return 0;
+			}
+		}
+		if (topMove == Move.NO_MOVE)
+			return (excludedMove == Move.NO_MOVE) ? scoreNoLegalMoves(ply) : alpha;
+		if (excludedMove != Move.NO_MOVE)
+			return topScore;
+		
+		int bound;
+		if (topScore >= beta)
+			bound = TranspositionTable.BOUND_LOWER;
+		else if (topScore > originalAlpha)
+			bound = TranspositionTable.BOUND_EXACT;
+		else
+			bound = TranspositionTable.BOUND_UPPER;
+		transpositionTable.store(key, topMove, scoreToTable(topScore, ply), depth, bound);
+		return topScore;
+	}
+	
+	/**
+	 * Returns the score of a move that has just been made, searched as a move of a principal
+	 * variation search: the first move with the full window, and the others with a null window
+	 * around alpha (and at a reduced depth if they are late), searching again if they beat alpha.
+	 * <p>
+	 * A move that gives check, or that is singular, is searched 1 ply deeper (extended), so a
+	 * forcing line isn't cut short just before it pays off. Extensions stop once the line is
+	 * <code>MAX_EXTENSION_PLY_FACTOR</code> times as deep as the iteration, so a long series of
+	 * checks can't blow up the search.
+	 * 
+	 * @param move       int packed move that was made
+	 * @param moveNumber int number of the move in the order the node's moves are searched (from 1)
+	 * @param depth      int number of plies that were left to search before the move
+	 * @param alpha      int score the color that made the move is already guaranteed
+	 * @param beta       int score the opponent is already guaranteed to hold that color below
+	 * @param ply        int number of plies from the root of the search before the move
+	 * @param inCheck    boolean whether the color that made the move was in check
+	 * @param singular   boolean whether the move is the table move and much better than the others
+	 * @return int score of the move for the color that made it
+	 */
+	private int searchMove(int move, int moveNumber, int depth, int alpha, int beta, int ply, boolean inCheck,
+			boolean singular) {
+		int newDepth = depth - 1;
+		if ((ply < rootDepth * MAX_EXTENSION_PLY_FACTOR) && (singular || position.isCheck()))
+			newDepth++;
+		if (moveNumber == 1)
+			return -negamax(newDepth, -beta, -alpha, ply + 1, true);
+		int reduction = 0;
+		if ((depth >= LMR_MIN_DEPTH) && (moveNumber > LMR_FULL_DEPTH_MOVES) && !inCheck)
+			reduction = findLateMoveReduction(move, depth, moveNumber);
+		int score = -negamax(newDepth - reduction, -alpha - 1, -alpha, ply + 1, true);
+		if ((score > alpha) && (reduction > 0) && !stopped)
+			score = -negamax(newDepth, -alpha - 1, -alpha, ply + 1, true);
+		if ((score > alpha) && (score < beta) && !stopped)
+			score = -negamax(newDepth, -beta, -alpha, ply + 1, true);
+		return score;
+	}
+	
+	/**
+	 * Returns true if the table move of the node is singular: so much better than every other move
+	 * that the node's score depends on it alone, which makes it worth searching deeper. The entry
+	 * must be a deep enough lower bound or exact score, and the node is searched to half the depth
+	 * with the table move left out. The move is singular if no other move reaches the table score
+	 * less a margin that grows with the depth.
+	 * 
+	 * @param entry long transposition table entry of the node
+	 * @param depth int number of plies left to search
+	 * @param ply   int number of plies from the root of the search
+	 * @return <code>true</code> if the table move is singular; <code>false</code> otherwise, or if
+	 *         the search was stopped.
+	 */
+	private boolean isSingularMove(long entry, int depth, int ply) {
+		if ((TranspositionTable.getBound(entry) == TranspositionTable.BOUND_UPPER)
+				|| (TranspositionTable.getDepth(entry) < depth - SINGULAR_ENTRY_DEPTH_MARGIN))
+			return false;
+		int entryScore = scoreFromTable(TranspositionTable.getScore(entry), ply);
+		if (Engine.isMateScore(entryScore))
+			return false;
+		int singularBeta = entryScore - (SINGULAR_MARGIN * depth);
+		excludedMoves[ply] = TranspositionTable.getMove(entry);
+		int score = negamax((depth - 1) / 2, singularBeta - 1, singularBeta, ply, false);
+		excludedMoves[ply] = Move.NO_MOVE;
+		return !stopped && (score < singularBeta);
+	}
+	
+	/**
+	 * Returns true if the move is neither a capture nor a promotion and doesn't give check, so it is
+	 * unlikely to change the static evaluation by much.
+	 * 
+	 * @param move int packed move
+	 * @return <code>true</code> if the move is quiet and doesn't give check; <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean isQuietNonCheck(int move) {
+		if (Move.isCapture(move) || Move.isPromotion(move))
+			return false;
+		position.makeMove(move);
+		boolean givesCheck = position.isCheck();
+		position.unmakeMove(move);
+		return !givesCheck;
+	}
+	
+	/**
+	 * Returns true if the moves after the first of a node at this depth are searched in parallel.
+	 * 
+	 * @param depth int number of plies left to search
+	 * @return <code>true</code> if the node's later moves are split into tasks; <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean canSplit(int depth) {
+		return (depth >= SPLIT_MIN_DEPTH) && engine.isForkJoinSearch();
+	}
+	
+	/**
+	 * Hands out the rest of a node's moves from its move picker, once the moves before them have
+	 * been searched, and returns a task for each move that the serial search wouldn't skip. Each
+	 * task keeps the move's number in the order the serial search would search it, so it is
+	 * searched with the same window and reduction as it would be there.
+	 * 
+	 * @param movePicker      <code>MovePicker</code> of the node, past the moves already searched
+	 * @param searchedMoves   int number of the node's moves already searched
+	 * @param depth           int number of plies left to search
+	 * @param alpha           int score the color to play is already guaranteed
+	 * @param beta            int score the opponent is already guaranteed to hold the color to play
+	 *                        below
+	 * @param ply             int number of plies from the root of the search
+	 * @param inCheck         boolean whether the color to play is in check
+	 * @param excludedMove    int packed move left out of the node; <code>Move.NO_MOVE</code> if none
+	 * @param futilityPruning boolean whether quiet moves that don't give check are skipped
+	 * @return <code>MoveTask</code> array of the tasks in move order, not yet started
+	 */
+	MoveTask[] splitLaterMoves(MovePicker movePicker, int searchedMoves, int depth, int alpha, int beta, int ply,
+			boolean inCheck, int excludedMove, boolean futilityPruning) {
+		int[] laterMoves = new int[Position.MAX_MOVES];
+		int laterMoveCount = 0;
+		int move;
+		while ((move = movePicker.nextMove()) != Move.NO_MOVE) {
+			if ((move != excludedMove) && (!futilityPruning || !isQuietNonCheck(move)))
+				laterMoves[laterMoveCount++] = move;
+		}
+		return createMoveTasks(laterMoves, 0, laterMoveCount, searchedMoves + 1, depth, alpha, beta, ply, inCheck);
+	}
+	
+	/**
+	 * Returns a task for each of the moves, each with its own copy of the position after the move.
+	 * 
+	 * @param moves           int buffer of packed moves
+	 * @param startIndex      int index of the first move to search in the buffer
+	 * @param endIndex        int index after the last move to search in the buffer
+	 * @param firstMoveNumber int number of the first move in the order the node's moves are
+	 *                        searched (from 1)
+	 * @param depth           int number of plies left to search
+	 * @param alpha           int score the color to play is already guaranteed
+	 * @param beta            int score the opponent is already guaranteed to hold the color to play
+	 *                        below
+	 * @param ply             int number of plies from the root of the search
+	 * @param inCheck         boolean whether the color to play is in check
+	 * @return <code>MoveTask</code> array of the tasks in move order, not yet started
+	 */
+	private MoveTask[] createMoveTasks(int[] moves, int startIndex, int endIndex, int firstMoveNumber, int depth,
+			int alpha, int beta, int ply, boolean inCheck) {
+		SplitPoint childSplitPoint = new SplitPoint(splitPoint, splitIndex);
+		MoveTask[] tasks = new MoveTask[endIndex - startIndex];
+		for (int i = 0; i < tasks.length; i++) {
+			Position movePosition = new Position(position);
+			movePosition.makeMove(moves[startIndex + i]);
+			tasks[i] = new MoveTask(childSplitPoint, i, moves[startIndex + i], movePosition, firstMoveNumber + i,
+					depth, alpha, beta, ply, inCheck);
+		}
+		return tasks;
+	}
+	
+	/**
+	 * Searches the tasks in parallel, each on a worker of its own, and returns once every one of
+	 * them has finished. The tasks are searched with the same window, so each result is what this
+	 * worker would have found searching the move with that window. If the search stops or this
+	 * worker's own split move is aborted meanwhile, this worker is stopped.
+	 * 
+	 * @param tasks <code>MoveTask</code> array of the tasks in move order
+	 */
+	private void invokeMoveTasks(MoveTask[] tasks) {
+		RecursiveTask.invokeAll(tasks);
+		if (engine.isStopRequested() || isSplitAborted())
+			stopped = true;
+	}
+	
+	/**
+	 * Searches a move of another worker's node as a task, on this worker.
+	 * 
+	 * @param parent <code>SearchWorker</code> whose node the move is from
+	 * @param task   <code>MoveTask</code> of the move
+	 * @return int score of the move for the color that made it; meaningless if this worker was
+	 *         stopped
+	 */
+	private int searchMoveTask(SearchWorker parent, MoveTask task) {
+		position = task.movePosition;
+		moveHistory.copyFrom(parent.moveHistory);
+		parameters = parent.parameters;
+		rootDepth = parent.rootDepth;
+		splitPoint = task.splitPoint;
+		splitIndex = task.index;
+		completedDepth = 0;
+		stopped = false;
+		return searchMove(task.move, task.moveNumber, task.depth, task.alpha, task.beta, task.ply, task.inCheck,
+				false);
+	}
+	
+	/**
+	 * Returns true if the split move this worker is searching, or one that it descends from, has
+	 * been aborted because an earlier move cut off its node.
+	 * 
+	 * @return <code>true</code> if this worker's search is no longer needed; <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean isSplitAborted() {
+		return (splitPoint != null) && splitPoint.isAborted(splitIndex);
+	}
+	
+	/**
+	 * Returns the number of plies a late move is reduced by. This must be called after the move has
+	 * been made.
+	 * 
+	 * @param move       int packed move that was made
+	 * @param depth      int number of plies that were left to search before the move
+	 * @param moveNumber int number of the move in the order it was searched (from 1)
+	 * @return int plies to reduce the search of the move by, leaving at least 1 ply to search
+	 */
+	private int findLateMoveReduction(int move, int depth, int moveNumber) {
+		int reduction = LMR_REDUCTIONS[depth][Math.min(moveNumber, Position.MAX_MOVES - 1)];
+		if (Move.isCapture(move) || Move.isPromotion(move))
+			reduction--;
+		else if (moveHistory.getHistoryScore(move) > LMR_GOOD_HISTORY_SCORE)
+			reduction--;
+		if (position.isCheck())
+			reduction--;
+		return Math.max(Math.min(reduction, depth - 2), 0);
+	}
+	
+	/**
+	 * Returns the score of the position for the color to play once the captures have played out,
+	 * so the search doesn't stop in the middle of an exchange. Only captures (and pawns pushing to
+	 * promote to a queen) are searched. The color to play can also choose not to capture, so the
+	 * static evaluation (stand pat) is a lower bound of the score, and a capture that can't raise
+	 * the score to alpha even after gaining the captured piece is skipped (delta pruning), as is a
+	 * capture that loses material once the exchange on its square plays out. When in
+	 * check every legal move is searched, since standing pat isn't possible.
+	 * 
+	 * @param alpha int score the color to play is already guaranteed elsewhere in the search
+	 * @param beta  int score the opponent is already guaranteed to hold the color to play below
+	 * @param ply   int number of plies from the root of the search
+	 * @return int score of the position; at least beta if the search was cut off
+	 */
+	private int quiescence(int alpha, int beta, int ply) {
+		checkTime();
+		if (stopped)
+			return 0;
+		if (ply >= Engine.MAX_PLY)
+			return position.evaluate();
+		
+		MovePicker movePicker = movePickers[ply];
+		int topScore;
+		int standPat = -INFINITE_SCORE;
+		boolean inCheck = position.isCheck();
+		if (inCheck) {
+			movePicker.startMainSearch(position, moveHistory, Move.NO_MOVE, ply);
+			topScore = -INFINITE_SCORE;
+		} else {
+			standPat = position.evaluate();
+			if (standPat >= beta)
+				return standPat;
+			if (standPat > alpha)
+				alpha = standPat;
+			topScore = standPat;
+			movePicker.startCaptures(position);
+		}
+		
+		int move;
+		while ((move = movePicker.nextMove()) != Move.NO_MOVE) {
+			if (!inCheck && ((standPat + Position.findMaterialGain(move) + DELTA_MARGIN <= alpha)
+					|| !position.seeGE(move, 0)))
+				continue;
+			position.makeMove(move);
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			position.unmakeMove(move);
+			if (stopped)
+				return 0;
+			if (score > topScore) {
+				topScore = score;
+				if (score > alpha) {
+					alpha = score;
+					if (score >= beta)
+						break;
+				}
+			}
+		}
+		if (topScore == -INFINITE_SCORE)
+			return scoreNoLegalMoves(ply);
+		return topScore;
+	}
+	
+	/**
+	 * Returns a score converted to be stored in the transposition table. Mate scores are relative
+	 * to the root of the search, but the entry can be read at a different ply, so they are stored
+	 * relative to the position instead.
+	 * 
+	 * @param score int score relative to the root
+	 * @param ply   int number of plies from the root of the search
+	 * @return int score relative to the position
+	 */
+	private static int scoreToTable(int score, int ply) {
+		if (score > Engine.MATE_SCORE - Engine.MAX_PLY)
+			return score + ply;
+		if (score < -Engine.MATE_SCORE + Engine.MAX_PLY)
+			return score - ply;
+		return score;
+	}
+	
+	/**
+	 * Returns a score read from the transposition table converted back to be relative to the root.
+	 * 
+	 * @param score int score relative to the position
+	 * @param ply   int number of plies from the root of the search
+	 * @return int score relative to the root
+	 */
+	private static int scoreFromTable(int score, int ply) {
+		if (score > Engine.MATE_SCORE - Engine.MAX_PLY)
+			return score - ply;
+		if (score < -Engine.MATE_SCORE + Engine.MAX_PLY)
+			return score + ply;
+		return score;
+	}
+	
+	/**
+	 * Counts a node and every so often stops the search if it is out of time, another worker has
+	 * finished the search, or the split move this worker is searching was aborted. The main
+	 * worker's first iteration is never stopped, so the search always has a move to return.
+	 */
+	private void checkTime() {
+		nodeCount++;
+		if ((nodeCount & TIME_CHECK_MASK) != 0)
+			return;
+		if (engine.isStopRequested()) {
+			stopped = true;
+		} else if (engine.hasCompletedIteration() && timeManager.isOutOfTime()) {
+			engine.requestStop();
+			stopped = true;
+		} else if (isSplitAborted()) {
+			stopped = true;
+		}
+	}
+	
+	/**
+	 * Returns the score of a position where the color to play has no legal moves.
+	 * 
+	 * @param ply int number of plies from the root of the search
+	 * @return int mated score if the color to play is in check; <code>Engine.DRAW_SCORE</code> otherwise
+	 */
+	private int scoreNoLegalMoves(int ply) {
+		if (position.isCheck())
+			return -Engine.MATE_SCORE + ply;
+		else
+			return Engine.DRAW_SCORE;
+	}
+	
+	/**
+	 * The node that a set of moves was split from, which records the first of those moves (in
+	 * move order) that cut the node off. The moves after it are aborted, and so is every split
+	 * point below them.
+	 */
+	private static class SplitPoint {
+		
+		/** Split point of the move that this node is under; <code>null</code> if there is none. */
+		private final SplitPoint parent;
+		
+		/** Index of the move that this node is under among the moves of the parent split point. */
+		private final int parentIndex;
+		
+		/** Index of the first move that cut the node off; <code>Integer.MAX_VALUE</code> if none has. */
+		private final AtomicInteger cutoffIndex = new AtomicInteger(Integer.MAX_VALUE);
+		
+		/**
+		 * Class constructor specifying the split move that the node is under.
+		 * 
+		 * @param parent      <code>SplitPoint</code> of the move the node is under; <code>null</code>
+		 *                    if there is none
+		 * @param parentIndex int index of that move among its split point's moves
+		 */
+		SplitPoint(SplitPoint parent, int parentIndex) {
+			this.parent = parent;
+			this.parentIndex = parentIndex;
+		}
+		
+		/**
+		 * Records that a move cut the node off, aborting the moves after it.
+		 * 
+		 * @param index int index of the move among the split moves
+		 */
+		void recordCutoff(int index) {
+			cutoffIndex.accumulateAndGet(index, Math::min);
+		}
+		
+		/**
+		 * Returns true if the move has been aborted, because an earlier move cut the node off or the
+		 * node itself is under an aborted move.
+		 * 
+		 * @param index int index of the move among the split moves
+		 * @return <code>true</code> if the move's search is no longer needed; <code>false</code>
+		 *         otherwise.
+		 */
+		boolean isAborted(int index) {
+			return (index > cutoffIndex.get()) || ((parent != null) && parent.isAborted(parentIndex));
+		}
+	}
+	
+	/**
+	 * Task that searches one of a node's moves after the first on a worker borrowed from the
+	 * engine, with the window the node had once its first move was searched.
+	 */
+	class MoveTask extends RecursiveTask<Integer> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/** Split point of the node the move is from. */
+		private final SplitPoint splitPoint;
+		
+		/** Index of the move among the split moves. */
+		private final int index;
+		
+		/** Packed move to search. */
+		private final int move;
+		
+		/** Copy of the position after the move, owned by this task. */
+		private final Position movePosition;
+		
+		/** Number of the move in the order the node's moves are searched (from 1). */
+		private final int moveNumber;
+		
+		/** Number of plies that were left to search before the move. */
+		private final int depth;
+		
+		/** Score the color that made the move is already guaranteed. */
+		private final int alpha;
+		
+		/** Score the opponent is already guaranteed to hold the color that made the move below. */
+		private final int beta;
+		
+		/** Number of plies from the root of the search before the move. */
+		private final int ply;
+		
+		/** Whether the color that made the move was in check. */
+		private final boolean inCheck;
+		
+		/**
+		 * Class constructor specifying the move to search and the node it is from.
+		 * 
+		 * @param splitPoint   <code>SplitPoint</code> of the node the move is from
+		 * @param index        int index of the move among the split moves
+		 * @param move         int packed move to search
+		 * @param movePosition <code>Position</code> copy after the move, owned by this task
+		 * @param moveNumber   int number of the move in the node's search order (from 1)
+		 * @param depth        int number of plies that were left to search before the move
+		 * @param alpha        int score the color that made the move is already guaranteed
+		 * @param beta         int score the opponent is already guaranteed to hold that color below
+		 * @param ply          int number of plies from the root of the search before the move
+		 * @param inCheck      boolean whether the color that made the move was in check
+		 */
+		MoveTask(SplitPoint splitPoint, int index, int move, Position movePosition, int moveNumber, int depth,
+				int alpha, int beta, int ply, boolean inCheck) {
+			this.splitPoint = splitPoint;
+			this.index = index;
+			this.move = move;
+			this.movePosition = movePosition;
+			this.moveNumber = moveNumber;
+			this.depth = depth;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.ply = ply;
+			this.inCheck = inCheck;
+		}
+		
+		/**
+		 * Returns the move this task searches.
+		 * 
+		 * @return int packed move
+		 */
+		int getMove() {
+			return move;
+		}
+		
+		/**
+		 * Returns the number of the move in the order the node's moves are searched.
+		 * 
+		 * @return int move number (from 1)
+		 */
+		int getMoveNumber() {
+			return moveNumber;
+		}
+		
+		@Override
+		protected Integer compute() {
+			if (splitPoint.isAborted(index) || engine.isStopRequested())
+				return 0;
+			SearchWorker worker = engine.acquireSplitWorker();
+			try {
+				int score = worker.searchMoveTask(SearchWorker.this, this);
+				if (!worker.stopped && (score >= beta))
+					splitPoint.recordCutoff(index);
+				return score;
+			} finally {
+				engine.releaseSplitWorker(worker);
+			}
+		}
+	}
+}
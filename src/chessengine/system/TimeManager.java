@@ -0,0 +1,135 @@
+package chessengine.system;
+
+/**
+ * Decides when an iterative deepening search should stop. Each search gets 2
+ * budgets from its <code>SearchLimits</code>: an optimum time, checked between
+ * iterations, and a maximum time, checked during an iteration to abort it.
+ * <p>
+ * On a clock, the optimum time is scaled by how stable the top move has been.
+ * When the top move keeps changing between depths the search needs more time
+ * to settle, so the optimum is stretched; once the same move has been on top
+ * for several depths, searching deeper is unlikely to change it, so the search
+ * stops early and saves the time for later moves.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+class TimeManager {
+
+	/** Milliseconds held back from every budget for the time it takes to make the move. */
+	private static final long MOVE_OVERHEAD_MS = 20;
+
+	/** The number of moves the time left on a clock is assumed to need to last. */
+	private static final int EXPECTED_MOVES_LEFT = 30;
+
+	/** How many times the optimum time the maximum time can be. */
+	private static final int MAX_TIME_FACTOR = 4;
+
+	/**
+	 * Fraction of the scaled optimum time after which no new iteration is started
+	 * on a clock, since an iteration usually takes longer than all the ones
+	 * before it together and would likely be aborted.
+	 */
+	private static final double ITERATION_START_FRACTION = 0.5;
+
+	/**
+	 * Scale of the optimum time by the number of iterations in a row the top
+	 * move hasn't changed (the last scale is used for any longer streak).
+	 */
+	private static final double[] STABILITY_SCALES = { 2.0, 1.4, 1.0, 0.8, 0.65, 0.5 };
+
+	/** <code>System.nanoTime()</code> when the search started. */
+	private long startTime;
+
+	/** Milliseconds the search should normally take. */
+	private long optimumTimeMs;
+
+	/** Milliseconds after which the search is aborted, even in the middle of an iteration. */
+	private long maximumTimeMs;
+
+	/** Whether the search has a time limit at all. */
+	private boolean timed;
+
+	/** Whether the optimum time is scaled by the stability of the top move. */
+	private boolean scaledByStability;
+
+	/** The top move of the last completed iteration. */
+	private int lastTopMove;
+
+	/** The number of iterations in a row that ended with the same top move. */
+	private int stableIterations;
+
+	/**
+	 * Starts timing a search with these limits.
+	 *
+	 * @param limits <code>SearchLimits</code> of the search
+	 */
+	void start(SearchLimits limits) {
+		startTime = System.nanoTime();
+		timed = limits.isTimed();
+		scaledByStability = false;
+		lastTopMove = Move.NO_MOVE;
+		stableIterations = 0;
+		if (limits.getMoveTimeMs() != SearchLimits.NO_LIMIT) {
+			optimumTimeMs = Math.max(limits.getMoveTimeMs() - MOVE_OVERHEAD_MS, 1);
+			maximumTimeMs = optimumTimeMs;
+		} else if (limits.getTimeLeftMs() != SearchLimits.NO_LIMIT) {
+			long usableTimeMs = Math.max(limits.getTimeLeftMs() - MOVE_OVERHEAD_MS, 1);
+			optimumTimeMs = (usableTimeMs / EXPECTED_MOVES_LEFT) + (limits.getIncrementMs() * 3 / 4);
+			maximumTimeMs = Math.min(optimumTimeMs * MAX_TIME_FACTOR, usableTimeMs / 2);
+			optimumTimeMs = Math.max(Math.min(optimumTimeMs, maximumTimeMs), 1);
+			maximumTimeMs = Math.max(maximumTimeMs, 1);
+			scaledByStability = true;
+		}
+	}
+
+	/**
+	 * Records the top move of an iteration that completed, so the optimum time
+	 * can be scaled by how often the top move changes.
+	 *
+	 * @param topMove int packed top move of the completed iteration
+	 */
+	void completeIteration(int topMove) {
+		if (topMove == lastTopMove)
+			stableIterations++;
+		else
+			stableIterations = 0;
+		lastTopMove = topMove;
+	}
+
+	/**
+	 * Returns true if there is time to start searching another depth.
+	 *
+	 * @return <code>true</code> if the next iteration should be started;
+	 *         <code>false</code> if the search should return its top move.
+	 */
+	boolean canStartIteration() {
+		if (!timed)
+			return true;
+		double scale = 1.0;
+		if (scaledByStability)
+			scale = STABILITY_SCALES[Math.min(stableIterations, STABILITY_SCALES.length - 1)]
+					* ITERATION_START_FRACTION;
+		return getElapsedMs() < Math.min(optimumTimeMs * scale, maximumTimeMs);
+	}
+
+	/**
+	 * Returns true if the search has used up its maximum time and must be aborted.
+	 *
+	 * @return <code>true</code> if the search is out of time; <code>false</code>
+	 *         otherwise.
+	 */
+	boolean isOutOfTime() {
+		return timed && (getElapsedMs() >= maximumTimeMs);
+	}
+
+	/**
+	 * Returns the milliseconds since the search started.
+	 *
+	 * @return long elapsed milliseconds
+	 */
+	long getElapsedMs() {
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+}
@@ -0,0 +1,257 @@
+package chessengine.system;
+
+/**
+ * Fixed size table of search results keyed by position key, so a position
+ * reached again by a different order of moves doesn't need to be searched
+ * again. Each entry stores the top move, score, depth and bound type of a
+ * search, packed into one <code>long</code>.
+ * <p>
+ * Entries are grouped into buckets of 4 that share a 64 byte cache line. A
+ * position can be stored in any entry of its bucket; when the bucket is full
+ * the entry replaced is the one that is shallowest once its age (the number of
+ * searches since it was written) is taken into account, so deep results
+ * survive but stale ones don't clog the table.
+ * <p>
+ * The table can be shared by several search threads without locking. Each
+ * entry is 2 longs, the key XORed with the data and the data itself, each read
+ * and written atomically. If 2 threads write the same entry at once, the halves
+ * can come from different writes, but then the XOR of the halves doesn't give
+ * back the key being probed and the entry is treated as a miss.
+ * <p>
+ * Subclasses decide where the longs are stored, by implementing atomic reads
+ * and writes of the long at an index.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public abstract class TranspositionTable {
+
+	/** Value returned by <code>probe</code> when the position isn't in the table. */
+	public static final long NO_ENTRY = 0;
+
+	/** Bound type of an entry whose score is the exact score of the position. */
+	public static final int BOUND_EXACT = 1;
+
+	/** Bound type of an entry whose score is at most the score of the position (a beta cutoff). */
+	public static final int BOUND_LOWER = 2;
+
+	/** Bound type of an entry whose score is at least the score of the position (no move beat alpha). */
+	public static final int BOUND_UPPER = 3;
+
+	/** Bytes used by each entry (a key and the packed data). */
+	public static final int BYTES_PER_ENTRY = 16;
+
+	/** The number of entries in each bucket. */
+	private static final int BUCKET_SIZE = 4;
+
+	/** The number of longs in each bucket. */
+	protected static final int LONGS_PER_BUCKET = BUCKET_SIZE * 2;
+
+	/** Mask for the move field of the packed data (a packed move uses the low 27 bits). */
+	private static final long MOVE_MASK = (1L << 27) - 1;
+
+	/** Bit position of the 16 bit score field. */
+	private static final int SCORE_SHIFT = 27;
+
+	/** Bit position of the 8 bit depth field. */
+	private static final int DEPTH_SHIFT = 43;
+
+	/** Bit position of the 2 bit bound type field. */
+	private static final int BOUND_SHIFT = 51;
+
+	/** Bit position of the 8 bit generation field. */
+	private static final int GENERATION_SHIFT = 53;
+
+	/** Mask for an 8 bit field. */
+	private static final int BYTE_MASK = 0xFF;
+
+	/** How much each search of age counts against the depth of an entry when choosing one to replace. */
+	private static final int AGE_WEIGHT = 8;
+
+	/** The number of buckets in the table. */
+	private final long bucketCount;
+
+	/** Mask that maps a position key to a bucket index. */
+	private final long bucketIndexMask;
+
+	/** The generation of the current search, stored in each entry to age it. */
+	private int generation;
+
+	/**
+	 * Class constructor specifying the number of buckets.
+	 *
+	 * @param bucketCount long number of buckets (a power of 2)
+	 */
+	protected TranspositionTable(long bucketCount) {
+		this.bucketCount = bucketCount;
+		this.bucketIndexMask = bucketCount - 1;
+	}
+
+	/**
+	 * Returns the number of buckets that fit in the size, rounded down to a power
+	 * of 2.
+	 *
+	 * @param sizeMb     int megabytes to use for the table (at least 1 is used)
+	 * @param maxBuckets long most buckets the table can hold
+	 * @return long number of buckets
+	 */
+	protected static long findBucketCount(int sizeMb, long maxBuckets) {
+		long bucketCount = ((long) Math.max(sizeMb, 1) << 20) / (BYTES_PER_ENTRY * BUCKET_SIZE);
+		return Math.min(Long.highestOneBit(bucketCount), maxBuckets);
+	}
+
+	/**
+	 * Returns the long at this index of the table's storage. The read must be
+	 * atomic, but doesn't need to be ordered with other reads and writes.
+	 *
+	 * @param index long index of the long
+	 * @return long value at this index
+	 */
+	protected abstract long readLong(long index);
+
+	/**
+	 * Sets the long at this index of the table's storage. The write must be
+	 * atomic, but doesn't need to be ordered with other reads and writes.
+	 *
+	 * @param index long index of the long
+	 * @param value long value to write
+	 */
+	protected abstract void writeLong(long index, long value);
+
+	/**
+	 * Starts a new search, so the entries written by earlier searches age.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & BYTE_MASK;
+	}
+
+	/**
+	 * Removes every entry from the table.
+	 */
+	public void clear() {
+		for (long i = 0; i < bucketCount * LONGS_PER_BUCKET; i++) {
+			writeLong(i, 0);
+		}
+		generation = 0;
+	}
+
+	/**
+	 * Returns the packed data stored for the position.
+	 *
+	 * @param key long key of the position
+	 * @return long packed data read with the static getters;
+	 *         <code>NO_ENTRY</code> if the position isn't in the table
+	 */
+	public long probe(long key) {
+		long bucketStart = findBucketStart(key);
+		for (long i = bucketStart; i < bucketStart + LONGS_PER_BUCKET; i += 2) {
+			long data = readLong(i + 1);
+			if ((data != NO_ENTRY) && ((readLong(i) ^ data) == key))
+				return data;
+		}
+		return NO_ENTRY;
+	}
+
+	/**
+	 * Stores the result of a search of the position. An existing entry for the
+	 * position is overwritten (keeping its move if there is no new one);
+	 * otherwise the least valuable entry of the bucket is replaced.
+	 *
+	 * @param key   long key of the position
+	 * @param move  int packed top move; <code>Move.NO_MOVE</code> if there is none
+	 * @param score int score of the search (must fit in 16 bits)
+	 * @param depth int number of plies searched
+	 * @param bound int bound type of the score
+	 */
+	public void store(long key, int move, int score, int depth, int bound) {
+		long bucketStart = findBucketStart(key);
+		long replaceIndex = bucketStart;
+		int lowestWorth = Integer.MAX_VALUE;
+		for (long i = bucketStart; i < bucketStart + LONGS_PER_BUCKET; i += 2) {
+			long data = readLong(i + 1);
+			if (data == NO_ENTRY) {
+				replaceIndex = i;
+				break;
+			}
+			if ((readLong(i) ^ data) == key) {
+				if (move == Move.NO_MOVE)
+					move = getMove(data);
+				replaceIndex = i;
+				break;
+			}
+			int age = (generation - getGeneration(data)) & BYTE_MASK;
+			int worth = getDepth(data) - (age * AGE_WEIGHT);
+			if (worth < lowestWorth) {
+				lowestWorth = worth;
+				replaceIndex = i;
+			}
+		}
+		long data = (move & MOVE_MASK) | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+				| ((long) (depth & BYTE_MASK) << DEPTH_SHIFT) | ((long) bound << BOUND_SHIFT)
+				| ((long) generation << GENERATION_SHIFT);
+		writeLong(replaceIndex, key ^ data);
+		writeLong(replaceIndex + 1, data);
+	}
+
+	/**
+	 * Returns the index of the first long of the bucket that a position is stored in.
+	 *
+	 * @param key long key of the position
+	 * @return long index of the bucket's first long
+	 */
+	private long findBucketStart(long key) {
+		return (key & bucketIndexMask) * LONGS_PER_BUCKET;
+	}
+
+	/**
+	 * Returns the packed top move of an entry's data.
+	 *
+	 * @param data long packed data of an entry
+	 * @return int packed move; <code>Move.NO_MOVE</code> if there is none
+	 */
+	public static int getMove(long data) {
+		return (int) (data & MOVE_MASK);
+	}
+
+	/**
+	 * Returns the score of an entry's data.
+	 *
+	 * @param data long packed data of an entry
+	 * @return int score
+	 */
+	public static int getScore(long data) {
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	/**
+	 * Returns the depth of an entry's data.
+	 *
+	 * @param data long packed data of an entry
+	 * @return int number of plies searched
+	 */
+	public static int getDepth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & BYTE_MASK;
+	}
+
+	/**
+	 * Returns the bound type of an entry's data.
+	 *
+	 * @param data long packed data of an entry
+	 * @return int <code>BOUND_EXACT</code>, <code>BOUND_LOWER</code> or
+	 *         <code>BOUND_UPPER</code>
+	 */
+	public static int getBound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	/**
+	 * Returns the generation of the search that wrote an entry's data.
+	 *
+	 * @param data long packed data of an entry
+	 * @return int generation
+	 */
+	private static int getGeneration(long data) {
+		return (int) (data >>> GENERATION_SHIFT) & BYTE_MASK;
+	}
+
+}
@@ -0,0 +1,110 @@
+package chessengine.system;
+
+import java.util.SplittableRandom;
+
+/**
+ * The <code>Zobrist</code> class contains the random keys that are combined
+ * into a 64 bit key for a position. There is a key for each piece on each
+ * square, for black to play, for each set of castling rights and for each file
+ * a pawn can be captured en passant on. A position's key is all of its keys
+ * XORed together, so making a move only needs to XOR the keys that changed in
+ * and out, and 2 positions with the same pieces and rights have the same key no
+ * matter which moves reached them.
+ * <p>
+ * The keys are generated from a fixed seed, so the key of a position is the
+ * same every time the program is run.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public final class Zobrist {
+
+	/**
+	 * Prevents instantiation of this class.
+	 */
+	private Zobrist() {
+	}
+
+	/** Seed of the generator the keys are drawn from. */
+	private static final long SEED = 0x2C9277B5A1F0E3D7L;
+
+	/** The number of distinct castling rights (4 rights that can each be on or off). */
+	private static final int CASTLING_RIGHTS_COUNT = 16;
+
+	/**
+	 * Key of each piece on each square, indexed by piece index * 64 + square. The
+	 * keys for <code>EMPTY_INDEX</code> are 0 so an empty square adds nothing.
+	 */
+	private static final long[] PIECE_KEYS = new long[(Chess.PIECE_COUNT + 1) * Board.SQR_COUNT];
+
+	/** Key of each set of castling rights, indexed by the packed rights. */
+	private static final long[] CASTLING_KEYS = new long[CASTLING_RIGHTS_COUNT];
+
+	/** Key of each file that a pawn can be captured en passant on. */
+	private static final long[] EN_PASSANT_KEYS = new long[Board.WIDTH];
+
+	/** Key XORed in when black is the color to play. */
+	private static final long BLACK_TO_PLAY_KEY;
+
+	static {
+		SplittableRandom random = new SplittableRandom(SEED);
+		for (int i = 0; i < Chess.PIECE_COUNT * Board.SQR_COUNT; i++) {
+			PIECE_KEYS[i] = random.nextLong();
+		}
+		for (int i = 1; i < CASTLING_RIGHTS_COUNT; i++) {
+			CASTLING_KEYS[i] = random.nextLong();
+		}
+		for (int i = 0; i < Board.WIDTH; i++) {
+			EN_PASSANT_KEYS[i] = random.nextLong();
+		}
+		BLACK_TO_PLAY_KEY = random.nextLong();
+	}
+
+	/**
+	 * Returns the key of a piece on a square.
+	 *
+	 * @param pieceIndex int index of the piece; <code>EMPTY_INDEX</code> for an
+	 *                   empty square
+	 * @param sqr        int index of the square
+	 * @return long key of the piece on this square; 0 for an empty square
+	 */
+	public static long pieceKey(int pieceIndex, int sqr) {
+		return PIECE_KEYS[(pieceIndex * Board.SQR_COUNT) + sqr];
+	}
+
+	/**
+	 * Returns the key of a set of castling rights.
+	 *
+	 * @param packedRights int castling rights packed by
+	 *                     <code>CastlingRights.getPackedRights()</code>
+	 * @return long key of these castling rights; 0 if no castling rights remain
+	 */
+	public static long castlingKey(int packedRights) {
+		return CASTLING_KEYS[packedRights];
+	}
+
+	/**
+	 * Returns the key for a pawn that can be captured en passant on this square.
+	 * Only the file is keyed, since the rank follows from the color to play.
+	 *
+	 * @param capturableSqr int index of the square of the pawn that can be
+	 *                      captured en passant; negative if there is none
+	 * @return long key of the en passant file; 0 if no pawn can be captured
+	 */
+	public static long enPassantKey(int capturableSqr) {
+		if (capturableSqr < 0)
+			return 0;
+		return EN_PASSANT_KEYS[capturableSqr % Board.WIDTH];
+	}
+
+	/**
+	 * Returns the key for the color to play.
+	 *
+	 * @param whiteToPlay boolean whether white is the color to play
+	 * @return long key for black to play; 0 if white is to play
+	 */
+	public static long sideKey(boolean whiteToPlay) {
+		return whiteToPlay ? 0 : BLACK_TO_PLAY_KEY;
+	}
+
+}
@@ -0,0 +1,71 @@
+package chessengine.system;
+
+/**
+ * Checks the move generator by counting the leaf nodes of the legal move tree
+ * and comparing them with the published perft counts, with and without the
+ * cache of subtree counts, on one thread and in parallel.
+ * <p>
+ * Run with <code>test/run-checks.sh</code>, or with
+ * <code>java chessengine.system.PerftTest</code> after compiling it against
+ * the engine's classes.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class PerftTest {
+
+	/** Positions the trees are counted from. */
+	private static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"};
+
+	/** Depth each position in <code>FENS</code> is counted to. */
+	private static final int[] DEPTHS = {5, 4};
+
+	/** Published leaf node count of each position in <code>FENS</code>. */
+	private static final long[] COUNTS = {4865609, 4085603};
+
+	/** Megabytes of cache for the cached counts. */
+	private static final int CACHE_SIZE_MB = 16;
+
+	/** Threads for the parallel counts. */
+	private static final int THREAD_COUNT = 4;
+
+	public static void main(String[] args) {
+		for (int i = 0; i < FENS.length; i++) {
+			checkCount(new Perft(Position.fromFen(FENS[i])), i, "serial");
+			checkCount(new Perft(Position.fromFen(FENS[i]), CACHE_SIZE_MB), i, "serial cached");
+			checkCount(new Perft(Position.fromFen(FENS[i]), 0, THREAD_COUNT, false), i, "parallel");
+			checkCount(new Perft(Position.fromFen(FENS[i]), 0, THREAD_COUNT, true), i, "parallel split");
+			checkCount(new Perft(Position.fromFen(FENS[i]), CACHE_SIZE_MB, THREAD_COUNT, true), i,
+					"parallel split cached");
+		}
+		System.out.println("Perft counts match the published counts.");
+	}
+
+	/**
+	 * Counts a tree and checks the count against the published one.
+	 *
+	 * @param perft <code>Perft</code> set up on the position at this index
+	 * @param index int index of the position in <code>FENS</code>
+	 * @param mode  String describing how the tree is counted, for messages
+	 */
+	private static void checkCount(Perft perft, int index, String mode) {
+		long count = perft.perft(DEPTHS[index]);
+		check(count == COUNTS[index], FENS[index] + ": " + mode + " perft " + DEPTHS[index] + " gave " + count
+				+ " instead of " + COUNTS[index]);
+	}
+
+	/**
+	 * Throws if a check fails.
+	 *
+	 * @param condition boolean that should be true
+	 * @param message   String describing the failure
+	 * @throws AssertionError if the condition is false
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}
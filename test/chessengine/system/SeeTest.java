@@ -0,0 +1,98 @@
+package chessengine.system;
+
+/**
+ * Checks static exchange evaluation on exchanges whose outcome is known, and
+ * that <code>seeGE</code> agrees with <code>see</code> around each outcome.
+ * <p>
+ * Run with <code>test/run-checks.sh</code>, or with
+ * <code>java chessengine.system.SeeTest</code> after compiling it against the
+ * engine's classes.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class SeeTest {
+
+	private static final int PAWN = Engine.PIECE_VALUES[Chess.WH_PAWN_INDEX];
+	private static final int KNIGHT = Engine.PIECE_VALUES[Chess.WH_KNIGHT_INDEX];
+	private static final int ROOK = Engine.PIECE_VALUES[Chess.WH_ROOK_INDEX];
+	private static final int QUEEN = Engine.PIECE_VALUES[Chess.WH_QUEEN_INDEX];
+
+	public static void main(String[] args) {
+		// undefended pawn
+		checkExchange("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", "e1e5", PAWN);
+		// pawn takes a knight and is taken back
+		checkExchange("4k3/8/3p4/4n3/3P4/8/8/4K3 w - - 0 1", "d4e5", KNIGHT - PAWN);
+		// queen takes a pawn and is taken back
+		checkExchange("4k3/8/3p4/4p3/8/8/8/4QK2 w - - 0 1", "e1e5", PAWN - QUEEN);
+		// the knight is defended, so the knight for a pawn and the rest stay put
+		checkExchange("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", "d3e5", PAWN - KNIGHT);
+		// the rook behind joins in once the front rook has captured
+		checkExchange("4k3/4r3/8/4n3/8/8/4R3/4R1K1 w - - 0 1", "e2e5", KNIGHT);
+		// the king takes back an undefended pawn
+		checkExchange("4k3/8/8/3p4/4P3/5K2/8/8 b - - 0 1", "d5e4", 0);
+		// the king can't take back a pawn the rook defends
+		checkExchange("4k3/4r3/8/3p4/4P3/5K2/8/8 b - - 0 1", "d5e4", PAWN);
+		// promoting where nothing can take the queen
+		checkExchange("4k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7a8", QUEEN - PAWN);
+		// promoting where the rook takes the queen
+		checkExchange("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7a8", -PAWN);
+		System.out.println("Static exchange evaluations match the known exchanges.");
+	}
+
+	/**
+	 * Checks <code>see</code> of a move against the known outcome of its
+	 * exchange, and <code>seeGE</code> at and on either side of that outcome.
+	 *
+	 * @param fen      String FEN of the position the move is made in
+	 * @param sqrNames String names of the move's start and end squares, such as
+	 *                 <code>e2e4</code>; a promotion is to a queen
+	 * @param expected int centipawns the color to play gains from the move
+	 */
+	private static void checkExchange(String fen, String sqrNames, int expected) {
+		Position position = Position.fromFen(fen);
+		int move = findMove(position, sqrNames);
+		check(move != Move.NO_MOVE, fen + ": " + sqrNames + " isn't a legal move");
+		int see = position.see(move);
+		check(see == expected, fen + ": see of " + sqrNames + " is " + see + " instead of " + expected);
+		for (int threshold = expected - 1; threshold <= expected + 1; threshold++) {
+			check(position.seeGE(move, threshold) == (expected >= threshold), fen + ": seeGE of " + sqrNames
+					+ " at " + threshold + " disagrees with see");
+		}
+	}
+
+	/**
+	 * Returns the legal move between the named squares, promoting to a queen if
+	 * it promotes.
+	 *
+	 * @param position <code>Position</code> to find the move in
+	 * @param sqrNames String names of the move's start and end squares
+	 * @return int packed move; <code>Move.NO_MOVE</code> if there is none
+	 */
+	private static int findMove(Position position, String sqrNames) {
+		int startSqr = Board.toSqr(sqrNames.substring(0, 2));
+		int endSqr = Board.toSqr(sqrNames.substring(2, 4));
+		int[] moves = new int[Position.MAX_MOVES];
+		int moveCount = position.findLegalMoves(moves);
+		for (int i = 0; i < moveCount; i++) {
+			int move = moves[i];
+			if ((Move.getStartSqr(move) == startSqr) && (Move.getEndSqr(move) == endSqr) && (!Move.isPromotion(move)
+					|| (Engine.PIECE_VALUES[Move.getPromoteToIndex(move)] == QUEEN)))
+				return move;
+		}
+		return Move.NO_MOVE;
+	}
+
+	/**
+	 * Throws if a check fails.
+	 *
+	 * @param condition boolean that should be true
+	 * @param message   String describing the failure
+	 * @throws AssertionError if the condition is false
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}
@@ -0,0 +1,81 @@
+package chessengine.system;
+
+/**
+ * Checks that the moves a fork-join search splits off a node keep the move
+ * numbers the serial search gives them, so each is searched with the same
+ * window and late move reduction as it would be serially.
+ * <p>
+ * Run with <code>test/run-checks.sh</code>, or with
+ * <code>java chessengine.system.SplitMoveNumberTest</code> after compiling it
+ * against the engine's classes.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class SplitMoveNumberTest {
+
+	/** Positions the split is checked at, with many quiet moves and captures. */
+	private static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 1"};
+
+	public static void main(String[] args) {
+		for (String fen : FENS) {
+			checkSplit(fen, false);
+			checkSplit(fen, true);
+		}
+		System.out.println("Split move numbers match the serial search.");
+	}
+
+	/**
+	 * Splits a node after its first move and checks each task's move and move
+	 * number against the order a serial search of the node hands them out in.
+	 *
+	 * @param fen             String FEN of the node's position
+	 * @param excludeLastMove boolean whether to leave a move out of the node, as
+	 *                        a singular extension test does
+	 */
+	private static void checkSplit(String fen, boolean excludeLastMove) {
+		Position position = Position.fromFen(fen);
+		int[] serialMoves = new int[Position.MAX_MOVES];
+		int serialMoveCount = 0;
+		MovePicker serialPicker = new MovePicker(new int[Position.MAX_MOVES]);
+		serialPicker.startMainSearch(position, new MoveHistory(), Move.NO_MOVE, 1);
+		int move;
+		while ((move = serialPicker.nextMove()) != Move.NO_MOVE) {
+			serialMoves[serialMoveCount++] = move;
+		}
+		int excludedMove = excludeLastMove ? serialMoves[--serialMoveCount] : Move.NO_MOVE;
+
+		Engine engine = new Engine(position);
+		SearchWorker worker = new SearchWorker(engine, 0, new HeapTranspositionTable(1), new TimeManager());
+		worker.prepare(position, SearchLimits.ofDepth(1), new SearchParameters());
+		MovePicker splitPicker = new MovePicker(new int[Position.MAX_MOVES]);
+		splitPicker.startMainSearch(position, new MoveHistory(), Move.NO_MOVE, 1);
+		check(splitPicker.nextMove() == serialMoves[0], fen + ": first move differs");
+		SearchWorker.MoveTask[] tasks = worker.splitLaterMoves(splitPicker, 1, 4, -100, 100, 1, false, excludedMove,
+				false);
+
+		check(tasks.length == serialMoveCount - 1, fen + ": " + tasks.length + " tasks for "
+				+ (serialMoveCount - 1) + " later moves");
+		for (int i = 0; i < tasks.length; i++) {
+			check(tasks[i].getMove() == serialMoves[i + 1], fen + ": task " + i + " has the wrong move");
+			check(tasks[i].getMoveNumber() == i + 2, fen + ": task " + i + " has move number "
+					+ tasks[i].getMoveNumber() + " instead of " + (i + 2));
+		}
+	}
+
+	/**
+	 * Throws if a check fails.
+	 *
+	 * @param condition boolean that should be true
+	 * @param message   String describing the failure
+	 * @throws AssertionError if the condition is false
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}
@@ -0,0 +1,131 @@
+package chessengine.system;
+
+/**
+ * Checks that the Zobrist key a position updates move by move matches the key
+ * computed from scratch for the same pieces, color to play and rights, and that
+ * taking a move back restores the key it had before.
+ * <p>
+ * Run with <code>test/run-checks.sh</code>, or with
+ * <code>java chessengine.system.ZobristKeyTest</code> after compiling it
+ * against the engine's classes.
+ *
+ * @author Darcy McCoy
+ * @since 1.0
+ */
+public class ZobristKeyTest {
+
+	/**
+	 * Positions the keys are checked from, as FEN without an en passant square.
+	 * Between them they reach castling, en passant, promotions and captures that
+	 * take away castling rights.
+	 */
+	private static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P1q1/N4N2/Pn1P1PPP/R2Q1RK1 w kq - 0 1"};
+
+	/** How many plies deep the moves are made from each position. */
+	private static final int DEPTH = 3;
+
+	public static void main(String[] args) {
+		for (String fen : FENS) {
+			String[] fields = fen.split(" ");
+			Board board = new Board(toSqrs(fields[0]));
+			CastlingRights castlingRights = new CastlingRights(fields[2].contains("K"), fields[2].contains("Q"),
+					fields[2].contains("k"), fields[2].contains("q"));
+			EnPassantRights enPassantRights = new EnPassantRights();
+			boolean whiteToPlay = fields[1].equals("w");
+			Position position = new Position(whiteToPlay, board, castlingRights, enPassantRights);
+			checkKeys(position, board, castlingRights, enPassantRights, whiteToPlay, DEPTH, fen);
+		}
+		System.out.println("Incremental keys match the keys computed from scratch.");
+	}
+
+	/**
+	 * Makes and takes back every legal move down to the given depth, checking the
+	 * key at each position reached and after each move is taken back.
+	 *
+	 * @param position        the <code>Position</code> the moves are made in
+	 * @param board           the <code>Board</code> the position plays on
+	 * @param castlingRights  the <code>CastlingRights</code> the position updates
+	 * @param enPassantRights the <code>EnPassantRights</code> the position updates
+	 * @param whiteToPlay     boolean whether white is to play in the position
+	 * @param depth           int plies left to make moves for
+	 * @param fen             String FEN the moves started from, for messages
+	 */
+	private static void checkKeys(Position position, Board board, CastlingRights castlingRights,
+			EnPassantRights enPassantRights, boolean whiteToPlay, int depth, String fen) {
+		checkKey(position, board, castlingRights, enPassantRights, whiteToPlay, fen);
+		if (depth == 0)
+			return;
+		int[] moves = new int[Position.MAX_MOVES];
+		int moveCount = position.findLegalMoves(moves);
+		for (int i = 0; i < moveCount; i++) {
+			long keyBefore = position.getKey();
+			position.makeMove(moves[i]);
+			checkKeys(position, board, castlingRights, enPassantRights, !whiteToPlay, depth - 1, fen);
+			position.unmakeMove(moves[i]);
+			check(position.getKey() == keyBefore, fen + ": key not restored after taking back "
+					+ Move.toString(moves[i]));
+		}
+		checkKey(position, board, castlingRights, enPassantRights, whiteToPlay, fen);
+	}
+
+	/**
+	 * Checks the position's key and the board's piece key against the keys of a
+	 * position built from scratch with the same squares and rights.
+	 *
+	 * @param position        the <code>Position</code> to check
+	 * @param board           the <code>Board</code> the position plays on
+	 * @param castlingRights  the position's <code>CastlingRights</code>
+	 * @param enPassantRights the position's <code>EnPassantRights</code>
+	 * @param whiteToPlay     boolean whether white is to play in the position
+	 * @param fen             String FEN the moves started from, for messages
+	 */
+	private static void checkKey(Position position, Board board, CastlingRights castlingRights,
+			EnPassantRights enPassantRights, boolean whiteToPlay, String fen) {
+		String sqrs = "";
+		for (int sqr = 0; sqr < Board.SQR_COUNT; sqr++) {
+			sqrs += board.getSqr(sqr);
+		}
+		Board freshBoard = new Board(sqrs);
+		Position freshPosition = new Position(whiteToPlay, freshBoard, castlingRights.clone(),
+				enPassantRights.clone());
+		check(board.getPieceKey() == freshBoard.getPieceKey(), fen + ": piece key differs for\n" + position);
+		check(position.getKey() == freshPosition.getKey(), fen + ": key differs for\n" + position);
+	}
+
+	/**
+	 * Returns the 64 squares, from A8 to H1, of a FEN piece placement field.
+	 *
+	 * @param placement String piece placement field of a FEN
+	 * @return String of 64 squares in the form <code>Board</code> is built from
+	 */
+	private static String toSqrs(String placement) {
+		String sqrs = "";
+		for (char c : placement.toCharArray()) {
+			if (Character.isDigit(c)) {
+				for (int i = 0; i < c - '0'; i++) {
+					sqrs += Chess.EMPTY;
+				}
+			} else if (c != '/') {
+				sqrs += c;
+			}
+		}
+		return sqrs;
+	}
+
+	/**
+	 * Throws if a check fails.
+	 *
+	 * @param condition boolean that should be true
+	 * @param message   String describing the failure
+	 * @throws AssertionError if the condition is false
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Compiles the engine and the checks in this directory, then runs every check.
+# A check prints a line and exits normally when it passes, and throws an
+# AssertionError when it fails.
+set -e
+root=$(cd "$(dirname "$0")/.." && pwd)
+out=$(mktemp -d)
+trap 'rm -rf "$out"' EXIT
+javac -d "$out/main" $(find "$root/src" -name '*.java')
+javac -cp "$out/main" -d "$out/test" $(find "$root/test" -name '*.java')
+for check in $(cd "$root/test" && find . -name '*Test.java' | sed 's|^\./||; s|\.java$||; s|/|.|g' | sort); do
+	echo "$check"
+	java -cp "$out/main:$out/test" "$check"
+done